@@ -0,0 +1,86 @@
+#!/usr/bin/env bash
+#
+# Startup time and resident memory of the plain jar, the AppCDS + AOT build and
+# (when present) the native executable.
+#
+# Build first:
+#   ./mvnw -Pcds package                  # target/*.jar and target/cds/
+#   ./mvnw -Pnative native:compile        # optional, target/image-process-api
+#
+# Usage: MONGODB_URI=mongodb://localhost:27017 scripts/startup-benchmark.sh [runs]
+#
+# Startup is the "process running for" time Spring Boot logs once the context is
+# ready; RSS is read from /proc after startup, so the script needs Linux.
+
+set -euo pipefail
+
+RUNS="${1:-5}"
+ROOT="$(cd "$(dirname "$0")/.." && pwd)"
+TARGET="$ROOT/target"
+JAR="$(ls "$TARGET"/image-process-api-*.jar 2>/dev/null | grep -v original | head -n 1 || true)"
+CDS_DIR="$TARGET/cds"
+NATIVE="$TARGET/image-process-api"
+
+# Same placeholder settings as the CDS training run: no AWS, no index creation
+APP_ARGS=(
+    "--server.port=0"
+    "--spring.mongodb.uri=${MONGODB_URI:-mongodb://localhost:27017}"
+    "--spring.data.mongodb.auto-index-creation=false"
+    "--storage.type=${STORAGE_TYPE:-s3}"
+    "--aws.s3.bucket-name=${AWS_S3_BUCKET_NAME:-startup-benchmark}"
+)
+
+# Run one start and print "<seconds> <rss kB>"
+measure() {
+    local log
+    log="$(mktemp)"
+    "$@" "${APP_ARGS[@]}" > "$log" 2>&1 &
+    local pid=$!
+    local waited=0
+    until grep -q "Started ImageProcessApiApplication" "$log"; do
+        if ! kill -0 "$pid" 2>/dev/null || [ "$waited" -ge 1200 ]; then
+            echo "startup failed, log follows:" >&2
+            cat "$log" >&2
+            kill "$pid" 2>/dev/null || true
+            rm -f "$log"
+            return 1
+        fi
+        sleep 0.05
+        waited=$((waited + 1))
+    done
+    local seconds rss
+    seconds="$(grep -o "process running for [0-9.]*" "$log" | awk '{print $4}')"
+    rss="$(awk '/VmRSS/ {print $2}' "/proc/$pid/status")"
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+    rm -f "$log"
+    echo "$seconds $rss"
+}
+
+benchmark() {
+    local name="$1"
+    shift
+    local results=""
+    for _ in $(seq "$RUNS"); do
+        read -r seconds rss < <(measure "$@")
+        [ -n "${seconds:-}" ] || exit 1
+        results+="$seconds $rss"$'\n'
+    done
+    printf "%s" "$results" | awk -v name="$name" \
+        '{ seconds += $1; rss += $2 } END { printf "%-10s %10.3f %12d\n", name, seconds / NR, rss / NR / 1024 }'
+}
+
+printf "%-10s %10s %12s\n" "mode" "startup(s)" "rss(MB)"
+
+if [ -n "$JAR" ]; then
+    benchmark "jar" java -jar "$JAR"
+fi
+
+if [ -f "$CDS_DIR/application.jsa" ]; then
+    (cd "$CDS_DIR" && benchmark "cds+aot" java -XX:SharedArchiveFile=application.jsa \
+        -Dspring.aot.enabled=true -jar "$(basename "$JAR")")
+fi
+
+if [ -x "$NATIVE" ]; then
+    benchmark "native" "$NATIVE"
+fi
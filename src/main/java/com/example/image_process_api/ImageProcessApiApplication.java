@@ -2,12 +2,15 @@ package com.example.image_process_api;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+import com.example.image_process_api.config.NativeHints;
 
 
 
 @SpringBootApplication
 @EnableMongoRepositories
+@ImportRuntimeHints(NativeHints.class)
 public class ImageProcessApiApplication {
 	
 	public static void main(String[] args) {
@@ -0,0 +1,86 @@
+package com.example.image_process_api.config;
+
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import com.example.image_process_api.dto.AuthResponse;
+import com.example.image_process_api.dto.BulkUploadResult;
+import com.example.image_process_api.dto.CropRequest;
+import com.example.image_process_api.dto.FileUploadResponse;
+import com.example.image_process_api.dto.FiltersRequest;
+import com.example.image_process_api.dto.LoginRequest;
+import com.example.image_process_api.dto.PaginatedResponse;
+import com.example.image_process_api.dto.RegisterRequest;
+import com.example.image_process_api.dto.ResizeRequest;
+import com.example.image_process_api.dto.SimilarImage;
+import com.example.image_process_api.dto.TransformationRequest;
+import com.example.image_process_api.entity.Blob;
+import com.example.image_process_api.entity.Image;
+import com.example.image_process_api.entity.ImageMetadata;
+import com.example.image_process_api.entity.TransformJob;
+import com.example.image_process_api.entity.TransformLease;
+import com.example.image_process_api.entity.User;
+import com.example.image_process_api.exception.ErrorResponse;
+import java.util.List;
+
+/**
+ * Reflection hints for AOT processing and GraalVM native images.
+ *
+ * Controller bodies are registered by Spring automatically, but generic and nested
+ * types, JSON written by hand (bulk upload progress) and documents only touched
+ * through MongoTemplate are not. JJWT loads its implementation classes by name.
+ */
+public class NativeHints implements RuntimeHintsRegistrar {
+    
+    private static final List<String> JJWT_IMPLEMENTATION_CLASSES = List.of(
+            "io.jsonwebtoken.impl.DefaultJwtBuilder",
+            "io.jsonwebtoken.impl.DefaultJwtParserBuilder",
+            "io.jsonwebtoken.impl.DefaultClaimsBuilder",
+            "io.jsonwebtoken.impl.io.StandardCompressionAlgorithms",
+            "io.jsonwebtoken.impl.security.StandardSecureDigestAlgorithms",
+            "io.jsonwebtoken.impl.security.StandardEncryptionAlgorithms",
+            "io.jsonwebtoken.impl.security.StandardKeyAlgorithms",
+            "io.jsonwebtoken.impl.security.StandardKeyOperations",
+            "io.jsonwebtoken.impl.security.StandardHashAlgorithms",
+            "io.jsonwebtoken.impl.security.KeysBridge",
+            "io.jsonwebtoken.jackson.io.JacksonSerializer",
+            "io.jsonwebtoken.jackson.io.JacksonDeserializer"
+    );
+    
+    private final BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+    
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        // Lombok DTOs bound by Jackson, including nested and generic members
+        bindingRegistrar.registerReflectionHints(hints.reflection(),
+                AuthResponse.class,
+                BulkUploadResult.class,
+                CropRequest.class,
+                FileUploadResponse.class,
+                FiltersRequest.class,
+                LoginRequest.class,
+                PaginatedResponse.class,
+                RegisterRequest.class,
+                ResizeRequest.class,
+                SimilarImage.class,
+                TransformationRequest.class,
+                ErrorResponse.class);
+        
+        // Mongo documents, which are also returned directly as response bodies
+        bindingRegistrar.registerReflectionHints(hints.reflection(),
+                Image.class,
+                ImageMetadata.class,
+                Blob.class,
+                TransformJob.class,
+                TransformLease.class,
+                User.class);
+        
+        for (String className : JJWT_IMPLEMENTATION_CLASSES) {
+            hints.reflection().registerType(TypeReference.of(className),
+                    MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                    MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+    }
+}
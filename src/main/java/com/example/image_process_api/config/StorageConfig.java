@@ -0,0 +1,57 @@
+package com.example.image_process_api.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.services.s3.S3Client;
+import com.example.image_process_api.storage.BlobStore;
+import com.example.image_process_api.storage.InMemoryBlobStore;
+import com.example.image_process_api.storage.LocalFileSystemBlobStore;
+import com.example.image_process_api.storage.S3BlobStore;
+import com.example.image_process_api.storage.TieredBlobStore;
+import java.nio.file.Path;
+
+/**
+ * Selects the BlobStore implementation from storage.type: s3 (default), local, memory or tiered
+ */
+@Configuration
+public class StorageConfig {
+    
+    @Bean
+    @ConditionalOnProperty(name = "storage.type", havingValue = "s3", matchIfMissing = true)
+    public BlobStore s3BlobStore(
+            S3Client s3Client,
+            @Value("${aws.s3.bucket-name}") String bucketName,
+            @Value("${aws.s3.region}") String region) {
+        return new S3BlobStore(s3Client, bucketName, region);
+    }
+    
+    @Bean
+    @ConditionalOnProperty(name = "storage.type", havingValue = "local")
+    public BlobStore localBlobStore(@Value("${storage.local.root}") String root) {
+        return new LocalFileSystemBlobStore(Path.of(root));
+    }
+    
+    @Bean
+    @ConditionalOnProperty(name = "storage.type", havingValue = "memory")
+    public BlobStore inMemoryBlobStore() {
+        return new InMemoryBlobStore();
+    }
+    
+    @Bean
+    @ConditionalOnProperty(name = "storage.type", havingValue = "tiered")
+    public BlobStore tieredBlobStore(
+            S3Client s3Client,
+            @Value("${aws.s3.bucket-name}") String bucketName,
+            @Value("${aws.s3.region}") String region,
+            @Value("${storage.tiered.cache-root}") String cacheRoot,
+            @Value("${storage.tiered.max-cache-size}") DataSize maxCacheSize) {
+        return new TieredBlobStore(
+                new LocalFileSystemBlobStore(Path.of(cacheRoot)),
+                new S3BlobStore(s3Client, bucketName, region),
+                maxCacheSize.toBytes()
+        );
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.image_process_api.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Scheduling drives the queue polling and lease heartbeats, which only worker nodes need
+@Configuration
+@Profile("worker")
+@EnableScheduling
+public class WorkerConfig {
+}
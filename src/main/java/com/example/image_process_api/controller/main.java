@@ -1,6 +1,13 @@
 package com.example.image_process_api.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -8,7 +15,9 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.multipart.MultipartFile;
 import com.example.image_process_api.dto.RegisterRequest;
 import com.example.image_process_api.dto.LoginRequest;
@@ -16,13 +25,30 @@ import com.example.image_process_api.dto.AuthResponse;
 import com.example.image_process_api.dto.FileUploadResponse;
 import com.example.image_process_api.dto.PaginatedResponse;
 import com.example.image_process_api.dto.TransformationRequest;
+import com.example.image_process_api.dto.RenderedImage;
+import com.example.image_process_api.dto.BulkUploadResult;
+import com.example.image_process_api.dto.SimilarImage;
 import com.example.image_process_api.service.AuthService;
 import com.example.image_process_api.service.ImageService;
-import com.example.image_process_api.service.ImageTransformationService;
+import com.example.image_process_api.service.TransformJobService;
+import com.example.image_process_api.service.ImageDeliveryService;
+import com.example.image_process_api.service.BulkIngestionService;
 import com.example.image_process_api.exception.AuthException;
+import com.example.image_process_api.security.JwtTokenProvider;
 import com.example.image_process_api.entity.Image;
+import com.example.image_process_api.entity.ImageMetadata;
+import com.example.image_process_api.entity.TransformJob;
+import com.example.image_process_api.entity.TransformJobStatus;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import tools.jackson.databind.json.JsonMapper;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 
 @Controller
@@ -37,7 +63,24 @@ public class main {
     private ImageService imageService;
     
     @Autowired
-    private ImageTransformationService imageTransformationService;
+    private TransformJobService transformJobService;
+    
+    @Autowired
+    private ImageDeliveryService imageDeliveryService;
+    
+    @Autowired
+    private BulkIngestionService bulkIngestionService;
+    
+    @Autowired
+    private JsonMapper jsonMapper;
+    
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+    
+    @Value("${similarity.dedupe-distance:6}")
+    private int dedupeDistance;
+    
+    private static final int MAX_SIMILAR_IMAGES = 100;
     
     @GetMapping()
     public String getHomeString() {
@@ -55,17 +98,37 @@ public class main {
     }
     
     @PostMapping("upload")
-    public FileUploadResponse uploadFile(@RequestParam("file") MultipartFile file) throws IOException {
+    public FileUploadResponse uploadFile(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "dedupe", defaultValue = "false") boolean dedupe) throws IOException {
         // Check if file is empty
         if (file.isEmpty()) {
             throw new AuthException("File cannot be empty");
         }
         
+        byte[] fileData = file.getBytes();
+        
+        // Optionally return an existing image that looks the same instead of storing another copy.
+        // The file is decoded once and its metadata reused if the upload goes ahead.
+        ImageMetadata metadata = null;
+        if (dedupe) {
+            metadata = imageService.extractMetadata(fileData);
+            Image existing = imageService.findNearDuplicate(metadata, dedupeDistance);
+            if (existing != null) {
+                return new FileUploadResponse(
+                        existing.getFileUrl(),
+                        existing.getFileName(),
+                        "Near-duplicate of image " + existing.getId() + ", upload skipped"
+                );
+            }
+        }
+        
         String fileUrl = imageService.uploadImage(
-                file.getBytes(),
+                fileData,
                 file.getOriginalFilename(),
                 file.getContentType(),
-                null
+                null,
+                metadata
         );
         
         return new FileUploadResponse(
@@ -75,11 +138,49 @@ public class main {
         );
     }
     
+    /**
+     * Bulk upload from a ZIP or TAR archive sent as the raw request body.
+     * Progress is streamed back as newline-delimited JSON, one line per entry plus a final summary.
+     */
+    @PostMapping(value = "upload/bulk", consumes = {
+            "application/zip",
+            "application/x-tar",
+            "application/gzip",
+            "application/x-gzip",
+            MediaType.APPLICATION_OCTET_STREAM_VALUE
+    })
+    public void bulkUpload(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/x-ndjson");
+        OutputStream output = response.getOutputStream();
+        
+        bulkIngestionService.ingest(request.getInputStream(), null, result -> {
+            try {
+                output.write(jsonMapper.writeValueAsBytes(result));
+                output.write('\n');
+                // Flush per line so clients see progress while the archive is still uploading
+                output.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+    
     @GetMapping("images/{id}")
     public Image getImage(@PathVariable String id) {
         return imageService.getImageById(id);
     }
     
+    @GetMapping("images/{id}/similar")
+    public List<SimilarImage> getSimilarImages(
+            @PathVariable String id,
+            @RequestParam(value = "distance", defaultValue = "10") int distance,
+            @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        if (limit <= 0 || limit > MAX_SIMILAR_IMAGES) {
+            throw new AuthException("Limit must be between 1 and " + MAX_SIMILAR_IMAGES);
+        }
+        return imageService.findSimilar(id, distance, limit);
+    }
+    
     @GetMapping("images")
     public PaginatedResponse<Image> getImages(
             @RequestParam(value = "page", defaultValue = "0") int page,
@@ -87,10 +188,86 @@ public class main {
         return imageService.getImages(page, limit);
     }
     
+    @GetMapping("images/{id}/render")
+    public ResponseEntity<byte[]> renderImage(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestParam(value = "download", defaultValue = "false") boolean download,
+            HttpServletRequest request) {
+        RenderedImage rendered = imageDeliveryService.render(id, accept, requester(request));
+        
+        // Vary: Accept so shared caches keep one entry per negotiated format
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(rendered.getContentType()))
+                .contentLength(rendered.getData().length)
+                .varyBy(HttpHeaders.ACCEPT)
+                .cacheControl(CacheControl.maxAge(1, TimeUnit.DAYS).cachePublic());
+        if (download) {
+            response.header(HttpHeaders.CONTENT_DISPOSITION,
+                    ContentDisposition.attachment().filename(rendered.getFileName()).build().toString());
+        }
+        return response.body(rendered.getData());
+    }
+    
+    /**
+     * Stream the stored original, honouring conditional and single range requests
+     */
+    @GetMapping("images/{id}/content")
+    public void getImageContent(@PathVariable String id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        imageDeliveryService.writeContent(id, request, response);
+    }
+    
+    /**
+     * Transform an image and return the result. With the job queue enabled, a transform that a worker
+     * has not finished within the await timeout gets 202 Accepted with the job to poll instead.
+     */
     @PostMapping("images/{id}/transform")
-    public Image transformImage(@PathVariable String id, @RequestBody TransformationRequest transformationRequest) {
-        return imageTransformationService.applyTransformations(id, transformationRequest);
+    public ResponseEntity<?> transformImage(
+            @PathVariable String id,
+            @RequestBody TransformationRequest transformationRequest,
+            HttpServletRequest request) {
+        if (!transformJobService.isQueueEnabled()) {
+            return ResponseEntity.ok(transformJobService.transform(id, transformationRequest, requester(request)));
+        }
+        TransformJob job = transformJobService.submitAndAwait(id, transformationRequest, requester(request));
+        if (job.getStatus() == TransformJobStatus.COMPLETED) {
+            return ResponseEntity.ok(imageService.getImageById(job.getResultImageId()));
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/transform-jobs/" + job.getId()))
+                .body(job);
+    }
+    
+    /**
+     * Queue a transform for the worker nodes and return immediately; poll the job for the result
+     */
+    @PostMapping("images/{id}/transform-jobs")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public TransformJob submitTransformJob(
+            @PathVariable String id,
+            @RequestBody TransformationRequest transformationRequest,
+            HttpServletRequest request) {
+        return transformJobService.submit(id, transformationRequest, requester(request));
+    }
+    
+    @GetMapping("transform-jobs/{id}")
+    public TransformJob getTransformJob(@PathVariable String id) {
+        return transformJobService.getJob(id);
+    }
+    
+    /**
+     * Identify who a request is made for: the user in a valid bearer token, otherwise the client address.
+     * Transforms are rate limited and fairly scheduled per requester.
+     */
+    private String requester(HttpServletRequest request) {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization != null && authorization.startsWith("Bearer ")) {
+            String userId = jwtTokenProvider.getUserId(authorization.substring("Bearer ".length()));
+            if (userId != null) {
+                return userId;
+            }
+        }
+        return "ip:" + request.getRemoteAddr();
     }
     
 }
-
@@ -0,0 +1,37 @@
+package com.example.image_process_api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * One line of the bulk upload progress stream: either a per-entry result or the final summary
+ */
+@Getter
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkUploadResult {
+    // "uploaded", "failed", "skipped" or "summary"
+    private String status;
+    private String entry;
+    private String imageId;
+    private String fileUrl;
+    private String message;
+    
+    public static BulkUploadResult uploaded(String entry, String imageId, String fileUrl) {
+        return new BulkUploadResult("uploaded", entry, imageId, fileUrl, null);
+    }
+    
+    public static BulkUploadResult failed(String entry, String message) {
+        return new BulkUploadResult("failed", entry, null, null, message);
+    }
+    
+    public static BulkUploadResult skipped(String entry, String message) {
+        return new BulkUploadResult("skipped", entry, null, null, message);
+    }
+    
+    public static BulkUploadResult summary(int uploaded, int failed, int skipped) {
+        return new BulkUploadResult("summary", null, null, null,
+                uploaded + " uploaded, " + failed + " failed, " + skipped + " skipped");
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.image_process_api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class RenderedImage {
+    private byte[] data;
+    private String contentType;
+    private String fileName;
+}
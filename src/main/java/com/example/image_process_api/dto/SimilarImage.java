@@ -0,0 +1,13 @@
+package com.example.image_process_api.dto;
+
+import com.example.image_process_api.entity.Image;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class SimilarImage {
+    private Image image;
+    // Hamming distance between the perceptual hashes (0 = visually identical)
+    private int distance;
+}
@@ -0,0 +1,14 @@
+package com.example.image_process_api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class StoredContent {
+    private String fileKey;
+    private long size;
+    private String contentType;
+    private String etag;
+    private long lastModified;
+}
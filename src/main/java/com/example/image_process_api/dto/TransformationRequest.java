@@ -23,4 +23,12 @@ public class TransformationRequest {
     
     @JsonProperty("filters")
     private FiltersRequest filters;
+    
+    // Encoder quality (1-100) for lossy output formats
+    @JsonProperty("quality")
+    private Integer quality;
+    
+    // Size budget in bytes; encoder quality is searched to stay under it
+    @JsonProperty("targetBytes")
+    private Long targetBytes;
 }
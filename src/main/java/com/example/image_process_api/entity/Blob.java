@@ -0,0 +1,31 @@
+package com.example.image_process_api.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * A stored object, keyed by the SHA-256 of its bytes.
+ * Identical uploads share one object and bump refCount instead of storing a copy.
+ * refCount is the number of image documents pointing at the blob; a blob at zero stays
+ * stored and is picked up again by the next identical upload.
+ */
+@Document("blobs")
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class Blob {
+    // Hex SHA-256 of the content; the _id doubles as the unique index
+    @Id
+    private String id;
+    
+    private String fileKey;
+    private String fileUrl;
+    private long size;
+    private String contentType;
+    private long refCount;
+    private LocalDateTime createdAt;
+}
@@ -2,10 +2,12 @@ package com.example.image_process_api.entity;
 
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.index.Indexed;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
+import java.util.Map;
 
 @Document("images")
 @Getter
@@ -18,6 +20,18 @@ public class Image {
     private String fileUrl;
     private String fileName;
     private String contentType;
+    // Indexed for the similarity index's catch-up on recent uploads
+    @Indexed
     private LocalDateTime uploadedAt;
     private String uploadedBy;
+    
+    // SHA-256 of the content; several images may share one stored blob
+    @Indexed
+    private String contentHash;
+    
+    // Dimensions, EXIF and placeholder captured at upload
+    private ImageMetadata metadata;
+    
+    // Content-negotiated encodings of this image: format extension -> storage key
+    private Map<String, String> variants;
 }
@@ -0,0 +1,32 @@
+package com.example.image_process_api.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import java.util.Map;
+
+/**
+ * Image properties captured once at upload and embedded in the image document,
+ * so listings can lay out and paint placeholders without fetching the file
+ */
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImageMetadata {
+    // Dimensions as displayed, i.e. after applying the EXIF orientation
+    private Integer width;
+    private Integer height;
+    
+    // EXIF orientation (1-8); 1 when the file carries none
+    private Integer orientation;
+    
+    private String colorSpace;
+    private Boolean hasAlpha;
+    private Map<String, String> exif;
+    
+    // BlurHash of the image as displayed
+    private String blurHash;
+    
+    // 64-bit dHash of the image as displayed, for near-duplicate search
+    private Long perceptualHash;
+}
@@ -0,0 +1,39 @@
+package com.example.image_process_api.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import com.example.image_process_api.dto.TransformationRequest;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import java.time.Instant;
+
+/**
+ * A queued transform. Workers claim jobs with an atomic findAndModify that sets a lease;
+ * a RUNNING job whose lease expired (its worker died) becomes claimable again.
+ */
+@Document("transform_jobs")
+@CompoundIndex(name = "claim_idx", def = "{ 'status' : 1, 'leaseExpiresAt' : 1, 'createdAt' : 1 }")
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransformJob {
+    @Id
+    private String id;
+    
+    private String imageId;
+    private TransformationRequest request;
+    private String requestedBy;
+    private TransformJobStatus status;
+    
+    // Worker currently holding the lease and when it lapses without a heartbeat
+    private String owner;
+    private Instant leaseExpiresAt;
+    private int attempts;
+    
+    private String resultImageId;
+    private String error;
+    private Instant createdAt;
+    private Instant updatedAt;
+}
@@ -0,0 +1,8 @@
+package com.example.image_process_api.entity;
+
+public enum TransformJobStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
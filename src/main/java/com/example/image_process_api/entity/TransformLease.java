@@ -0,0 +1,35 @@
+package com.example.image_process_api.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import java.time.Instant;
+
+/**
+ * Cluster-wide claim on computing one derivative (source image + canonical transform spec).
+ * Once the derivative exists the lease keeps pointing at it for a day, so repeated requests
+ * reuse the result; MongoDB's TTL monitor then removes it.
+ */
+@Document("transform_leases")
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransformLease {
+    // Source image id + canonical transform spec
+    @Id
+    private String id;
+    
+    private String owner;
+    
+    // Also removes leases whose owner died mid-transform, once they have run out
+    @Indexed(expireAfter = "0s")
+    private Instant expiresAt;
+    
+    private String resultImageId;
+    
+    @Indexed(expireAfter = "1d")
+    private Instant completedAt;
+}
@@ -0,0 +1,7 @@
+package com.example.image_process_api.exception;
+
+public class BlobNotFoundException extends RuntimeException {
+    public BlobNotFoundException(String key) {
+        super("Stored file not found: " + key);
+    }
+}
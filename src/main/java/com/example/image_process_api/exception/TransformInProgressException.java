@@ -0,0 +1,14 @@
+package com.example.image_process_api.exception;
+
+public class TransformInProgressException extends RuntimeException {
+    private final long retryAfterSeconds;
+    
+    public TransformInProgressException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+    
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
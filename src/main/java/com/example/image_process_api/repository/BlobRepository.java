@@ -0,0 +1,17 @@
+package com.example.image_process_api.repository;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Update;
+import org.springframework.stereotype.Repository;
+import com.example.image_process_api.entity.Blob;
+
+@Repository
+public interface BlobRepository extends MongoRepository<Blob, String> {
+    // Atomically take another reference; returns the number of documents modified (0 if the blob is new)
+    @Update("{ '$inc' : { 'refCount' : 1 } }")
+    long findAndIncrementRefCountById(String id);
+    
+    // Drop a reference taken by an image that was never saved
+    @Update("{ '$inc' : { 'refCount' : -1 } }")
+    long findAndDecrementRefCountById(String id);
+}
@@ -0,0 +1,9 @@
+package com.example.image_process_api.repository;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+import com.example.image_process_api.entity.TransformJob;
+
+@Repository
+public interface TransformJobRepository extends MongoRepository<TransformJob, String> {
+}
@@ -1,5 +1,6 @@
 package com.example.image_process_api.security;
 
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
@@ -27,4 +28,24 @@ public class JwtTokenProvider {
                 .signWith(key)
                 .compact();
     }
+    
+    /**
+     * Get the user ID from a token
+     * @param token - compact JWT
+     * @return user ID (subject), or null if the token is invalid or expired
+     */
+    public String getUserId(String token) {
+        SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        
+        try {
+            return Jwts.parser()
+                    .verifyWith(key)
+                    .build()
+                    .parseSignedClaims(token)
+                    .getPayload()
+                    .getSubject();
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+    }
 }
@@ -0,0 +1,81 @@
+package com.example.image_process_api.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import com.example.image_process_api.entity.Blob;
+import com.example.image_process_api.repository.BlobRepository;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+
+@Service
+public class BlobService {
+    
+    @Autowired
+    private BlobRepository blobRepository;
+    
+    @Autowired
+    private StorageService storageService;
+    
+    /**
+     * Store file content once under a content-addressed key.
+     * Re-uploading identical bytes only increments the blob's reference count.
+     * @param fileData - byte array of the file
+     * @param fileName - original filename
+     * @param contentType - MIME type of the file
+     * @return Stored blob
+     */
+    public Blob store(byte[] fileData, String fileName, String contentType) {
+        // Validate file format
+        storageService.validateFileFormat(fileName, contentType);
+        
+        String hash = sha256Hex(fileData);
+        
+        // Fast path: the content is already stored, so a duplicate costs one update
+        if (blobRepository.findAndIncrementRefCountById(hash) == 0) {
+            String fileKey = "blobs/" + hash;
+            String fileUrl = storageService.uploadObject(fileKey, fileData, contentType);
+            try {
+                return blobRepository.insert(new Blob(
+                        hash,
+                        fileKey,
+                        fileUrl,
+                        fileData.length,
+                        contentType,
+                        1,
+                        LocalDateTime.now()
+                ));
+            } catch (DuplicateKeyException e) {
+                // A concurrent upload of the same bytes won the insert; the object we wrote is identical
+                blobRepository.findAndIncrementRefCountById(hash);
+            }
+        }
+        
+        return blobRepository.findById(hash)
+                .orElseThrow(() -> new RuntimeException("Blob disappeared while storing: " + hash));
+    }
+    
+    /**
+     * Give back a reference taken by store(), e.g. when the image document referencing it could not be saved
+     * @param hash - blob ID (SHA-256 of the content)
+     */
+    public void release(String hash) {
+        blobRepository.findAndDecrementRefCountById(hash);
+    }
+    
+    /**
+     * Compute the hex SHA-256 digest of file content
+     * @param fileData - byte array of the file
+     * @return lowercase hex digest
+     */
+    public static String sha256Hex(byte[] fileData) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(fileData));
+        } catch (NoSuchAlgorithmException e) {
+            // Every JRE is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.example.image_process_api.service;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import com.example.image_process_api.dto.BulkUploadResult;
+import com.example.image_process_api.entity.Image;
+import com.example.image_process_api.exception.AuthException;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Ingests a ZIP or TAR (optionally gzip-compressed) archive as it streams in.
+ * Entries are read one at a time from the request body, never extracted to disk.
+ * Storage uploads run in parallel with a bounded number in flight, and image
+ * documents are written with unordered bulk inserts in batches. A batch is written
+ * once it is full or its oldest document has waited max-batch-delay, so slow
+ * archives still report each entry promptly.
+ */
+@Service
+public class BulkIngestionService {
+    
+    @Autowired
+    private ImageService imageService;
+    
+    @Value("${upload.bulk.concurrency:8}")
+    private int concurrency;
+    
+    @Value("${upload.bulk.batch-size:100}")
+    private int batchSize;
+    
+    @Value("${upload.bulk.max-entry-size:50MB}")
+    private DataSize maxEntrySize;
+    
+    @Value("${upload.bulk.max-batch-delay:250ms}")
+    private Duration maxBatchDelay;
+    
+    // Shared by all bulk requests, so concurrent archives queue for threads instead of each adding more
+    private final ExecutorService uploadExecutor;
+    
+    // Writes batches that have waited long enough while the archive is between entries
+    private final ScheduledExecutorService flushTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "bulk-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    public BulkIngestionService(@Value("${upload.bulk.threads:16}") int threads) {
+        this.uploadExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-upload");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Ingest every image entry of an archive.
+     * If the archive breaks off part way (a corrupt entry, or the client aborting the upload), the
+     * entries read so far are still saved and the stream ends with a failed line and the summary.
+     * If the progress consumer fails with an UncheckedIOException (the client went away), reading
+     * stops, entries already stored are still saved, and the IOException is rethrown.
+     * @param body - raw archive stream
+     * @param uploadedBy - user ID who uploaded the archive (optional)
+     * @param progress - receives one result per entry as it completes, then a summary; never called concurrently
+     */
+    public void ingest(InputStream body, String uploadedBy, Consumer<BulkUploadResult> progress) throws IOException {
+        Listener listener = new Listener(progress);
+        
+        Batch batch = new Batch(listener);
+        // Each permit is one entry held in memory; this bounds both parallelism and memory use
+        Semaphore permits = new Semaphore(concurrency);
+        AtomicInteger skipped = new AtomicInteger();
+        
+        // An archive that cannot be opened at all is still reported as a plain error response
+        ArchiveInputStream<?> archive = openArchive(body);
+        String readingEntry = null;
+        String readError = null;
+        long delayMillis = Math.max(1, maxBatchDelay.toMillis());
+        ScheduledFuture<?> timedFlush = flushTimer.scheduleWithFixedDelay(
+                () -> uploadExecutor.execute(batch::flushIfDue), delayMillis, delayMillis, TimeUnit.MILLISECONDS);
+        try (archive) {
+            ArchiveEntry entry;
+            while (!listener.disconnected() && (entry = archive.getNextEntry()) != null) {
+                String name = entry.getName();
+                if (entry.isDirectory() || isHidden(name)) {
+                    continue;
+                }
+                ImageFormat format = formatOf(name);
+                if (format == null) {
+                    skipped.incrementAndGet();
+                    listener.accept(BulkUploadResult.skipped(name, "Not a supported image type"));
+                    continue;
+                }
+                
+                readingEntry = name;
+                byte[] data = archive.readNBytes((int) Math.min(Integer.MAX_VALUE - 8, maxEntrySize.toBytes() + 1));
+                readingEntry = null;
+                if (data.length > maxEntrySize.toBytes()) {
+                    // Leave the rest of the entry unread; the archive stream skips it on getNextEntry
+                    skipped.incrementAndGet();
+                    listener.accept(BulkUploadResult.skipped(name, "Entry exceeds " + maxEntrySize));
+                    continue;
+                }
+                
+                acquire(permits);
+                String fileName = baseName(name);
+                uploadExecutor.execute(() -> {
+                    try {
+                        batch.add(name, imageService.prepareImage(data, fileName, format.getMimeType(), uploadedBy));
+                    } catch (RuntimeException e) {
+                        batch.fail(name, e.getMessage() != null ? e.getMessage() : "Upload failed");
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        } catch (IOException | RuntimeException e) {
+            readError = "Archive could not be read to the end: " + (e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        } finally {
+            // Wait for in-flight uploads, then write what is left
+            timedFlush.cancel(false);
+            acquire(permits, concurrency);
+            permits.release(concurrency);
+            batch.flush();
+        }
+        
+        if (listener.disconnected()) {
+            throw listener.disconnect.getCause();
+        }
+        if (readError != null) {
+            // Without an entry name the failure hit between entries, so nothing after it was read
+            batch.fail(readingEntry, readError);
+        }
+        listener.accept(BulkUploadResult.summary(batch.uploaded.get(), batch.failed.get(), skipped.get()));
+    }
+    
+    private ArchiveInputStream<?> openArchive(InputStream body) throws IOException {
+        // Both detectors peek at the first bytes, which needs mark/reset support
+        InputStream input = new BufferedInputStream(body);
+        try {
+            String compression = CompressorStreamFactory.detect(input);
+            input = new BufferedInputStream(new CompressorStreamFactory().createCompressorInputStream(compression, input));
+        } catch (CompressorException e) {
+            // Not compressed; read the archive directly
+        }
+        try {
+            return new ArchiveStreamFactory().createArchiveInputStream(input);
+        } catch (ArchiveException e) {
+            throw new AuthException("Unsupported archive format. Upload a ZIP or TAR (optionally gzip-compressed) archive");
+        }
+    }
+    
+    private ImageFormat formatOf(String name) {
+        int lastDotIndex = name.lastIndexOf(".");
+        if (lastDotIndex == -1) {
+            return null;
+        }
+        try {
+            return ImageFormat.fromName(name.substring(lastDotIndex));
+        } catch (AuthException e) {
+            return null;
+        }
+    }
+    
+    private boolean isHidden(String name) {
+        // macOS archives carry resource forks and dot files next to the real content
+        return name.startsWith("__MACOSX/") || baseName(name).startsWith(".");
+    }
+    
+    private String baseName(String name) {
+        return name.substring(name.lastIndexOf('/') + 1);
+    }
+    
+    private void acquire(Semaphore permits) {
+        acquire(permits, 1);
+    }
+    
+    private void acquire(Semaphore permits, int count) {
+        try {
+            permits.acquire(count);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted during bulk upload");
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        flushTimer.shutdownNow();
+        uploadExecutor.shutdown();
+    }
+    
+    /**
+     * Serialises progress lines and stops delivering them once the client has gone away
+     */
+    private static class Listener implements Consumer<BulkUploadResult> {
+        private final Consumer<BulkUploadResult> progress;
+        private volatile UncheckedIOException disconnect;
+        
+        Listener(Consumer<BulkUploadResult> progress) {
+            this.progress = progress;
+        }
+        
+        @Override
+        public synchronized void accept(BulkUploadResult result) {
+            if (disconnect != null) {
+                return;
+            }
+            try {
+                progress.accept(result);
+            } catch (UncheckedIOException e) {
+                // Thrown on an upload thread it would otherwise escape into the executor
+                disconnect = e;
+            }
+        }
+        
+        boolean disconnected() {
+            return disconnect != null;
+        }
+    }
+    
+    /**
+     * Collects prepared documents and inserts them batchSize at a time,
+     * reporting each entry once its document is actually written
+     */
+    private class Batch {
+        private final Consumer<BulkUploadResult> listener;
+        private final List<String> names = new ArrayList<>();
+        private final List<Image> images = new ArrayList<>();
+        private long oldestNanos;
+        private final Object writeLock = new Object();
+        private final AtomicInteger uploaded = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        
+        Batch(Consumer<BulkUploadResult> listener) {
+            this.listener = listener;
+        }
+        
+        void add(String name, Image image) {
+            List<String> fullNames = null;
+            List<Image> fullImages = null;
+            synchronized (this) {
+                if (images.isEmpty()) {
+                    oldestNanos = System.nanoTime();
+                }
+                names.add(name);
+                images.add(image);
+                if (images.size() >= batchSize) {
+                    fullNames = new ArrayList<>(names);
+                    fullImages = new ArrayList<>(images);
+                    names.clear();
+                    images.clear();
+                }
+            }
+            // Write outside the lock so other uploads keep filling the next batch
+            if (fullImages != null) {
+                write(fullNames, fullImages);
+            }
+        }
+        
+        void fail(String name, String message) {
+            failed.incrementAndGet();
+            listener.accept(BulkUploadResult.failed(name, message));
+        }
+        
+        /**
+         * Write the pending documents if the oldest has waited at least max-batch-delay
+         */
+        void flushIfDue() {
+            synchronized (this) {
+                if (images.isEmpty() || System.nanoTime() - oldestNanos < maxBatchDelay.toNanos()) {
+                    return;
+                }
+            }
+            flush();
+        }
+        
+        void flush() {
+            // Serialised so the final flush waits for a timed one still writing, and the summary counts it
+            synchronized (writeLock) {
+                List<String> remainingNames;
+                List<Image> remainingImages;
+                synchronized (this) {
+                    if (images.isEmpty()) {
+                        return;
+                    }
+                    remainingNames = new ArrayList<>(names);
+                    remainingImages = new ArrayList<>(images);
+                    names.clear();
+                    images.clear();
+                }
+                write(remainingNames, remainingImages);
+            }
+        }
+        
+        private void write(List<String> batchNames, List<Image> batchImages) {
+            Map<Integer, String> failures;
+            try {
+                failures = imageService.insertImages(batchImages);
+            } catch (RuntimeException e) {
+                for (String name : batchNames) {
+                    fail(name, "Failed to save image metadata: " + e.getMessage());
+                }
+                return;
+            }
+            for (int i = 0; i < batchImages.size(); i++) {
+                if (failures.containsKey(i)) {
+                    fail(batchNames.get(i), failures.get(i));
+                } else {
+                    uploaded.incrementAndGet();
+                    Image image = batchImages.get(i);
+                    listener.accept(BulkUploadResult.uploaded(batchNames.get(i), image.getId(), image.getFileUrl()));
+                }
+            }
+        }
+    }
+}
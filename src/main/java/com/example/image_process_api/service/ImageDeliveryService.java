@@ -0,0 +1,354 @@
+package com.example.image_process_api.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.ServletWebRequest;
+import com.example.image_process_api.dto.RenderedImage;
+import com.example.image_process_api.dto.StoredContent;
+import com.example.image_process_api.dto.TransformationRequest;
+import com.example.image_process_api.entity.Image;
+import com.example.image_process_api.exception.TransformInProgressException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Service
+public class ImageDeliveryService {
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private ImageTransformationService imageTransformationService;
+
+    @Autowired
+    private StorageService storageService;
+
+    @Autowired
+    private TransformScheduler transformScheduler;
+
+    // Modern formats in order of preference; they are only chosen when the client names them explicitly
+    private static final List<ImageFormat> NEGOTIABLE_FORMATS = List.of(ImageFormat.AVIF, ImageFormat.WEBP);
+
+    // Request attributes understood by Tomcat's NIO connector for zero-copy sendfile
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    // How long a request waits for the same variant being encoded by another request
+    @Value("${transform.coalescing.max-wait:20s}")
+    private Duration maxWait;
+
+    // Variant storage key -> encode running on this node
+    private final ConcurrentHashMap<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Render an image in the best format the client accepts.
+     * Each negotiated variant is encoded once, stored and recorded on the image.
+     * @param imageId - Image document ID
+     * @param acceptHeader - value of the request's Accept header (may be null)
+     * @param requestedBy - user (or client address) rendering the image; encoding a new variant is rate limited
+     * @return encoded image and its content type
+     */
+    public RenderedImage render(String imageId, String acceptHeader, String requestedBy) {
+        Image image = imageService.getImageById(imageId);
+        ImageFormat sourceFormat = sourceFormat(image);
+        ImageFormat format = negotiate(acceptHeader, sourceFormat);
+        String baseName = stripExtension(image.getFileName());
+
+        if (format == sourceFormat) {
+            byte[] original = storageService.downloadFile(storageService.extractKey(image.getFileUrl()));
+            return new RenderedImage(original, format.getMimeType(), baseName + "." + format.getExtension());
+        }
+
+        String variantKey = image.getVariants() != null ? image.getVariants().get(format.getExtension()) : null;
+        byte[] data = variantKey != null
+                ? storageService.downloadFile(variantKey)
+                : encodeVariantOnce(image, format, requestedBy);
+        return new RenderedImage(data, format.getMimeType(), baseName + "." + format.getExtension());
+    }
+
+    /**
+     * Encode and store a variant that is not recorded yet.
+     * Concurrent first requests for the same variant share one encode instead of each paying for it.
+     */
+    private byte[] encodeVariantOnce(Image image, ImageFormat format, String requestedBy) {
+        String variantKey = "variants/" + image.getId() + "." + format.getExtension();
+
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = inFlight.putIfAbsent(variantKey, future);
+        if (existing != null) {
+            return await(existing);
+        }
+
+        try {
+            // A render that finished between our read of the image and taking the slot has already stored it
+            Image current = imageService.getImageById(image.getId());
+            byte[] data;
+            if (current.getVariants() != null && current.getVariants().containsKey(format.getExtension())) {
+                data = storageService.downloadFile(current.getVariants().get(format.getExtension()));
+            } else {
+                transformScheduler.charge(requestedBy, transformScheduler.estimateCost(image.getMetadata(),
+                        new TransformationRequest(null, null, null, format.getExtension(), null, null, null)));
+                byte[] original = storageService.downloadFile(storageService.extractKey(image.getFileUrl()));
+                data = imageTransformationService.encodeVariant(original, image.getMetadata(), format, requestedBy);
+
+                // Deterministic key: a render on another node just overwrites identical content
+                storageService.uploadObject(variantKey, data, format.getMimeType());
+                imageService.addVariant(image.getId(), format, variantKey);
+            }
+            future.complete(data);
+            return data;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(variantKey, future);
+        }
+    }
+
+    /**
+     * Wait for the identical variant encode already running on this node, for at most max-wait
+     */
+    private byte[] await(CompletableFuture<byte[]> future) {
+        try {
+            return future.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new TransformInProgressException("This image variant is still being encoded, retry shortly", 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for an image variant");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Stream the stored original of an image, answering conditional and range requests.
+     * If-None-Match / If-Modified-Since give 304 and If-Match / If-Unmodified-Since give 412.
+     * A single satisfiable range gives 206, an unsatisfiable one 416. Malformed, multiple or
+     * stale (If-Range) ranges get the full content, which RFC 9110 allows.
+     * @param imageId - Image document ID
+     * @param request - current request
+     * @param response - response to write
+     */
+    public void writeContent(String imageId, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        StoredContent content = describeContent(imageId);
+        String etag = "\"" + content.getEtag() + "\"";
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                CacheControl.maxAge(1, TimeUnit.DAYS).cachePublic().getHeaderValue());
+
+        if (new ServletWebRequest(request, response).checkNotModified(etag, content.getLastModified())) {
+            return;
+        }
+
+        long size = content.getSize();
+        long start = 0;
+        long length = size;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && rangeStillValid(request.getHeader(HttpHeaders.IF_RANGE), etag, content.getLastModified())) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                // A malformed Range header is ignored and the full content is sent
+                ranges = List.of();
+            }
+            // Multipart byteranges are optional, so several ranges also get the full content
+            if (ranges.size() == 1) {
+                long end;
+                try {
+                    start = ranges.get(0).getRangeStart(size);
+                    end = ranges.get(0).getRangeEnd(size);
+                } catch (IllegalArgumentException e) {
+                    start = size;
+                    end = -1;
+                }
+                // HttpRange does not check the range against the size: a first byte past the end
+                // (or a zero-length suffix) cannot be satisfied
+                if (start >= size || end < start) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                    response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                    return;
+                }
+                length = end - start + 1;
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            }
+        }
+
+        response.setContentType(content.getContentType());
+        response.setContentLengthLong(length);
+        if ("HEAD".equals(request.getMethod()) || length == 0) {
+            return;
+        }
+
+        // Locally stored objects are handed to the container, which sends the file pages straight to the socket
+        Path localFile = Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))
+                ? storageService.localFile(content.getFileKey())
+                : null;
+        if (localFile != null) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, localFile.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, start + length);
+            return;
+        }
+
+        // Everything else is streamed from storage in chunks, never buffered whole
+        storageService.transferTo(content.getFileKey(), start, length, Channels.newChannel(response.getOutputStream()));
+    }
+
+    /**
+     * Check an If-Range precondition: the range is only honoured if the client's copy is still current
+     */
+    private boolean rangeStillValid(String ifRange, String etag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // If-Range requires a strong comparison, so weak tags never match
+            return ifRange.equals(etag);
+        }
+        try {
+            long since = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return lastModified >= 0 && since / 1000 == lastModified / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Describe the stored original of an image for direct streaming
+     * @param imageId - Image document ID
+     * @return storage key, size, content type and validators
+     */
+    public StoredContent describeContent(String imageId) {
+        Image image = imageService.getImageById(imageId);
+        String fileKey = storageService.extractKey(image.getFileUrl());
+
+        // Image documents never change their bytes, so the content hash (or the id for
+        // images stored before hashing) is a valid strong validator
+        String etag = image.getContentHash() != null ? image.getContentHash() : image.getId();
+        long lastModified = image.getUploadedAt() != null
+                ? image.getUploadedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : -1;
+
+        return new StoredContent(
+                fileKey,
+                storageService.size(fileKey),
+                image.getContentType(),
+                etag,
+                lastModified
+        );
+    }
+
+    /**
+     * Pick the output format for an Accept header.
+     * The format with the highest q-value wins; ties go to the server's preference of
+     * AVIF, then WebP, then the fallback. AVIF and WebP need an explicit media type because
+     * browsers and tools send wildcards even when they cannot decode them. The fallback is
+     * JPEG, or PNG for PNG sources so transparency is preserved, and is also served when
+     * nothing acceptable is left.
+     * @param acceptHeader - value of the Accept header (may be null)
+     * @param sourceFormat - format of the stored original
+     * @return negotiated format
+     */
+    public ImageFormat negotiate(String acceptHeader, ImageFormat sourceFormat) {
+        List<MediaType> accepted;
+        try {
+            accepted = acceptHeader == null || acceptHeader.isBlank()
+                    ? List.of(MediaType.ALL)
+                    : MediaType.parseMediaTypes(acceptHeader);
+        } catch (InvalidMediaTypeException e) {
+            accepted = List.of(MediaType.ALL);
+        }
+
+        ImageFormat fallback = sourceFormat == ImageFormat.PNG ? ImageFormat.PNG : ImageFormat.JPEG;
+        ImageFormat best = fallback;
+        double bestQuality = 0;
+        for (ImageFormat format : NEGOTIABLE_FORMATS) {
+            double quality = qualityOf(format, accepted, false);
+            if (quality > bestQuality) {
+                best = format;
+                bestQuality = quality;
+            }
+        }
+        // The fallback comes last in preference, so it needs a strictly higher q to win
+        return qualityOf(fallback, accepted, true) > bestQuality ? fallback : best;
+    }
+
+    /**
+     * q-value of a format: the most specific matching media range decides, as in RFC 9110
+     * @param allowWildcards - whether wildcard ranges such as image/* count as naming the format
+     */
+    private double qualityOf(ImageFormat format, List<MediaType> accepted, boolean allowWildcards) {
+        MediaType mediaType = MediaType.parseMediaType(format.getMimeType());
+        double quality = 0;
+        int specificity = -1;
+        for (MediaType range : accepted) {
+            int rangeSpecificity;
+            if (range.equalsTypeAndSubtype(mediaType)) {
+                rangeSpecificity = 2;
+            } else if (allowWildcards && range.isWildcardSubtype() && range.includes(mediaType)) {
+                rangeSpecificity = range.isWildcardType() ? 0 : 1;
+            } else {
+                continue;
+            }
+            if (rangeSpecificity > specificity) {
+                specificity = rangeSpecificity;
+                quality = range.getQualityValue();
+            }
+        }
+        return quality;
+    }
+
+    private ImageFormat sourceFormat(Image image) {
+        if (image.getContentType() != null) {
+            for (ImageFormat format : ImageFormat.values()) {
+                if (format.getMimeType().equalsIgnoreCase(image.getContentType())) {
+                    return format;
+                }
+            }
+        }
+        return ImageFormat.fromName(extensionOf(image.getFileName()));
+    }
+
+    private String extensionOf(String fileName) {
+        int lastDotIndex = fileName != null ? fileName.lastIndexOf(".") : -1;
+        return lastDotIndex == -1 ? "" : fileName.substring(lastDotIndex);
+    }
+
+    private String stripExtension(String fileName) {
+        if (fileName == null) {
+            return "image";
+        }
+        int lastDotIndex = fileName.lastIndexOf(".");
+        return lastDotIndex <= 0 ? fileName : fileName.substring(0, lastDotIndex);
+    }
+}
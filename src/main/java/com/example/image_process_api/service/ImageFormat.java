@@ -0,0 +1,62 @@
+package com.example.image_process_api.service;
+
+import com.example.image_process_api.exception.AuthException;
+
+/**
+ * Image formats accepted for upload and produced by transformations
+ */
+public enum ImageFormat {
+    PNG("png", "image/png", false),
+    JPEG("jpg", "image/jpeg", true),
+    WEBP("webp", "image/webp", true),
+    AVIF("avif", "image/avif", true);
+
+    private final String extension;
+    private final String mimeType;
+    private final boolean lossy;
+
+    ImageFormat(String extension, String mimeType, boolean lossy) {
+        this.extension = extension;
+        this.mimeType = mimeType;
+        this.lossy = lossy;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * Whether the encoder honours a quality setting (and so can be tuned to a size budget)
+     */
+    public boolean isLossy() {
+        return lossy;
+    }
+
+    /**
+     * Resolve a format from a requested name or file extension
+     * @param name - format name such as "png", "jpeg", ".jpg" or "webp"
+     * @return matching format
+     */
+    public static ImageFormat fromName(String name) {
+        if (name == null || name.isBlank()) {
+            throw new AuthException("Image format cannot be empty");
+        }
+        String normalized = name.trim().toLowerCase();
+        if (normalized.startsWith(".")) {
+            normalized = normalized.substring(1);
+        }
+        if (normalized.equals("jpeg")) {
+            return JPEG;
+        }
+        for (ImageFormat format : values()) {
+            if (format.extension.equals(normalized)) {
+                return format;
+            }
+        }
+        throw new AuthException("Unsupported image format: " + name);
+    }
+}
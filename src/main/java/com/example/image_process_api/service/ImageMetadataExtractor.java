@@ -0,0 +1,139 @@
+package com.example.image_process_api.service;
+
+import org.springframework.stereotype.Service;
+import com.example.image_process_api.entity.ImageMetadata;
+import com.example.image_process_api.util.BlurHash;
+import com.example.image_process_api.util.DHash;
+import com.example.image_process_api.util.ExifReader;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.io.ByteArrayInputStream;
+import java.util.Iterator;
+import java.util.Map;
+
+@Service
+public class ImageMetadataExtractor {
+    
+    // Longest side of the subsampled raster used for the placeholder and perceptual hash.
+    // Subsampling picks single pixels, so the hash needs several samples per 9x8 cell to be stable across resizes
+    private static final int SAMPLE_SIZE = 64;
+    
+    private static final int BLURHASH_COMPONENTS_X = 4;
+    private static final int BLURHASH_COMPONENTS_Y = 3;
+    
+    /**
+     * Extract dimensions, orientation, color space, key EXIF tags, a BlurHash placeholder and a perceptual hash.
+     * Dimensions and color model come from the header. The placeholder and hash are decoded with source
+     * subsampling, so only every n-th pixel is kept and no full-size raster is ever allocated.
+     * Subsampling bounds memory, not CPU: ImageIO still entropy-decodes every JPEG block and inflates
+     * every PNG row, so this costs about as much CPU as a full decode and runs on the uploading request.
+     * The multipart size limit is what bounds it.
+     * Formats ImageIO cannot read (e.g. WebP, AVIF) yield metadata with empty fields rather than an error.
+     * @param fileData - encoded image bytes
+     * @return extracted metadata
+     */
+    public ImageMetadata extract(byte[] fileData) {
+        Map<String, String> exif = ExifReader.read(fileData);
+        int orientation = parseOrientation(exif.get("Orientation"));
+        
+        Integer width = null;
+        Integer height = null;
+        String colorSpace = null;
+        Boolean hasAlpha = null;
+        String blurHash = null;
+        Long perceptualHash = null;
+        
+        try (ImageInputStream stream = ImageIO.createImageInputStream(new ByteArrayInputStream(fileData))) {
+            Iterator<ImageReader> readers = stream != null ? ImageIO.getImageReaders(stream) : null;
+            if (readers != null && readers.hasNext()) {
+                ImageReader reader = readers.next();
+                try {
+                    reader.setInput(stream, true, true);
+                    int rawWidth = reader.getWidth(0);
+                    int rawHeight = reader.getHeight(0);
+                    boolean transposed = orientation >= 5;
+                    width = transposed ? rawHeight : rawWidth;
+                    height = transposed ? rawWidth : rawHeight;
+                    
+                    Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+                    if (types.hasNext()) {
+                        ColorModel colorModel = types.next().getColorModel();
+                        colorSpace = colorSpaceName(colorModel.getColorSpace().getType());
+                        hasAlpha = colorModel.hasAlpha();
+                    }
+                    
+                    ImageReadParam param = reader.getDefaultReadParam();
+                    int step = Math.max(1, Math.max(rawWidth, rawHeight) / SAMPLE_SIZE);
+                    param.setSourceSubsampling(step, step, 0, 0);
+                    // Both hashes use the image as displayed, so an EXIF-rotated file and a copy with the rotation baked in agree
+                    Sample sample = orient(reader.read(0, param), orientation);
+                    blurHash = BlurHash.encode(sample.pixels(), sample.width(), sample.height(),
+                            BLURHASH_COMPONENTS_X, BLURHASH_COMPONENTS_Y);
+                    perceptualHash = DHash.encode(sample.pixels(), sample.width(), sample.height());
+                } finally {
+                    reader.dispose();
+                }
+            }
+        } catch (Exception e) {
+            // Unsupported color models (e.g. CMYK JPEGs) or corrupt data: keep what was read so far
+        }
+        
+        return new ImageMetadata(width, height, orientation, colorSpace, hasAlpha, exif, blurHash, perceptualHash);
+    }
+    
+    private Sample orient(BufferedImage sample, int orientation) {
+        int width = sample.getWidth();
+        int height = sample.getHeight();
+        int[] pixels = sample.getRGB(0, 0, width, height, null, 0, width);
+        
+        boolean transposed = orientation >= 5;
+        int displayWidth = transposed ? height : width;
+        int displayHeight = transposed ? width : height;
+        int[] oriented = new int[pixels.length];
+        for (int y = 0; y < displayHeight; y++) {
+            for (int x = 0; x < displayWidth; x++) {
+                int sx, sy;
+                switch (orientation) {
+                    case 2 -> { sx = width - 1 - x; sy = y; }
+                    case 3 -> { sx = width - 1 - x; sy = height - 1 - y; }
+                    case 4 -> { sx = x; sy = height - 1 - y; }
+                    case 5 -> { sx = y; sy = x; }
+                    case 6 -> { sx = y; sy = height - 1 - x; }
+                    case 7 -> { sx = width - 1 - y; sy = height - 1 - x; }
+                    case 8 -> { sx = width - 1 - y; sy = x; }
+                    default -> { sx = x; sy = y; }
+                }
+                oriented[y * displayWidth + x] = pixels[sy * width + sx];
+            }
+        }
+        return new Sample(oriented, displayWidth, displayHeight);
+    }
+    
+    private int parseOrientation(String value) {
+        try {
+            int orientation = value != null ? Integer.parseInt(value) : 1;
+            return orientation >= 1 && orientation <= 8 ? orientation : 1;
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
+    
+    private String colorSpaceName(int type) {
+        return switch (type) {
+            case ColorSpace.TYPE_RGB -> "RGB";
+            case ColorSpace.TYPE_GRAY -> "Gray";
+            case ColorSpace.TYPE_CMYK -> "CMYK";
+            case ColorSpace.TYPE_YCbCr -> "YCbCr";
+            default -> "Other";
+        };
+    }
+    
+    private record Sample(int[] pixels, int width, int height) {
+    }
+}
@@ -4,13 +4,29 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
+import com.example.image_process_api.entity.Blob;
 import com.example.image_process_api.entity.Image;
+import com.example.image_process_api.entity.ImageMetadata;
 import com.example.image_process_api.repository.ImageRepository;
 import com.example.image_process_api.exception.AuthException;
 import com.example.image_process_api.dto.PaginatedResponse;
+import com.example.image_process_api.dto.SimilarImage;
+import org.bson.types.ObjectId;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 @Service
 public class ImageService {
@@ -19,7 +35,22 @@ public class ImageService {
     private ImageRepository imageRepository;
     
     @Autowired
-    private S3Service s3Service;
+    private BlobService blobService;
+    
+    @Autowired
+    private ImageMetadataExtractor imageMetadataExtractor;
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Autowired
+    private SimilarityIndex similarityIndex;
+    
+    // Hamming distances above this are mostly unrelated images and would scan most of the index
+    private static final int MAX_SIMILARITY_DISTANCE = 24;
+    
+    // Smallest number of similarity candidates loaded from MongoDB per query
+    private static final int SIMILARITY_BATCH_SIZE = 10;
     
     /**
      * Upload an image file to S3 and save metadata to MongoDB
@@ -30,35 +61,192 @@ public class ImageService {
      * @return S3 file URL
      */
     public String uploadImage(byte[] fileData, String fileName, String contentType, String uploadedBy) {
-        // Upload to S3 and validate file format
-        String fileUrl = s3Service.uploadFile(fileData, fileName, contentType);
+        return uploadImage(fileData, fileName, contentType, uploadedBy, null);
+    }
+    
+    /**
+     * Upload an image file whose metadata the caller has already extracted
+     * @param fileData - byte array of the file
+     * @param fileName - original filename
+     * @param contentType - MIME type of the file
+     * @param uploadedBy - user ID who uploaded the file (optional)
+     * @param metadata - metadata from extractMetadata, or null to extract it here
+     * @return S3 file URL
+     */
+    public String uploadImage(byte[] fileData, String fileName, String contentType, String uploadedBy, ImageMetadata metadata) {
+        return storeImage(fileData, fileName, contentType, uploadedBy, metadata).getFileUrl();
+    }
+    
+    /**
+     * Decode an image and capture its metadata, so a caller that needs it before uploading
+     * (e.g. to look for near-duplicates) can pass it on instead of decoding the file twice
+     * @param fileData - byte array of the file
+     * @return Image metadata
+     */
+    public ImageMetadata extractMetadata(byte[] fileData) {
+        return imageMetadataExtractor.extract(fileData);
+    }
+    
+    /**
+     * Store image content (deduplicated by hash) and save its metadata to MongoDB
+     * @param fileData - byte array of the file
+     * @param fileName - original filename
+     * @param contentType - MIME type of the file
+     * @param uploadedBy - user ID who uploaded the file (optional)
+     * @return Saved image document
+     */
+    public Image storeImage(byte[] fileData, String fileName, String contentType, String uploadedBy) {
+        return storeImage(fileData, fileName, contentType, uploadedBy, null);
+    }
+    
+    private Image storeImage(byte[] fileData, String fileName, String contentType, String uploadedBy, ImageMetadata metadata) {
+        Image image = prepareImage(fileData, fileName, contentType, uploadedBy, metadata);
+        try {
+            image = imageRepository.insert(image);
+        } catch (RuntimeException e) {
+            // The image never existed, so it must not keep its blob referenced
+            blobService.release(image.getContentHash());
+            throw e;
+        }
+        similarityIndex.add(image);
+        return image;
+    }
+    
+    /**
+     * Store image content and build its metadata document without saving it,
+     * so bulk callers can insert many documents in one round trip
+     * @param fileData - byte array of the file
+     * @param fileName - original filename
+     * @param contentType - MIME type of the file
+     * @param uploadedBy - user ID who uploaded the file (optional)
+     * @return Unsaved image document with its ID already assigned
+     */
+    public Image prepareImage(byte[] fileData, String fileName, String contentType, String uploadedBy) {
+        return prepareImage(fileData, fileName, contentType, uploadedBy, null);
+    }
+    
+    private Image prepareImage(byte[] fileData, String fileName, String contentType, String uploadedBy, ImageMetadata metadata) {
+        // Validate and store content; identical bytes reuse the existing object
+        Blob blob = blobService.store(fileData, fileName, contentType);
+        
+        // Probe the file once here so clients and later transforms never have to
+        if (metadata == null) {
+            metadata = imageMetadataExtractor.extract(fileData);
+        }
         
-        // Save image metadata to MongoDB
-        Image image = new Image(
-                null,
-                fileUrl,
+        // The ID is assigned client-side so it is known even for bulk inserts
+        return new Image(
+                new ObjectId().toHexString(),
+                blob.getFileUrl(),
                 fileName,
                 contentType,
                 LocalDateTime.now(),
-                uploadedBy
+                uploadedBy,
+                blob.getId(),
+                metadata,
+                new HashMap<>()
         );
-        imageRepository.save(image);
-        
-        return fileUrl;
     }
     
     /**
-     * Get the last uploaded image ID for tracking purposes
-     * @return Last uploaded image ID
+     * Insert image documents with a single unordered bulk write
+     * @param images - prepared image documents
+     * @return Error message per failed position in the list (empty if all were inserted)
      */
-    public String getLastUploadedImageId() {
-        Pageable pageable = PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, "uploadedAt"));
-        Image lastImage = imageRepository.findAll(pageable)
-                .getContent()
-                .stream()
-                .findFirst()
-                .orElseThrow(() -> new AuthException("No images found"));
-        return lastImage.getId();
+    public Map<Integer, String> insertImages(List<Image> images) {
+        if (images.isEmpty()) {
+            return Map.of();
+        }
+        try {
+            // Unordered: one bad document does not stop the rest of the batch
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Image.class)
+                    .insert(images)
+                    .execute();
+            images.forEach(similarityIndex::add);
+            return Map.of();
+        } catch (BulkOperationException e) {
+            Map<Integer, String> failures = new HashMap<>();
+            e.getErrors().forEach(error -> failures.put(error.getIndex(), error.getMessage()));
+            for (int i = 0; i < images.size(); i++) {
+                if (failures.containsKey(i)) {
+                    blobService.release(images.get(i).getContentHash());
+                } else {
+                    similarityIndex.add(images.get(i));
+                }
+            }
+            return failures;
+        } catch (RuntimeException e) {
+            // Nothing is known to be written; inserting again would collide on the client-assigned IDs
+            images.forEach(image -> blobService.release(image.getContentHash()));
+            throw e;
+        }
+    }
+    
+    /**
+     * Find images that look like a stored image (resized, recompressed or lightly edited copies)
+     * @param imageId - Image document ID
+     * @param maxDistance - maximum Hamming distance between perceptual hashes
+     * @param limit - maximum number of images to return
+     * @return Up to limit similar images, closest first, excluding the image itself
+     */
+    public List<SimilarImage> findSimilar(String imageId, int maxDistance, int limit) {
+        Image image = getImageById(imageId);
+        Long hash = image.getMetadata() != null ? image.getMetadata().getPerceptualHash() : null;
+        if (hash == null) {
+            throw new AuthException("Image has no perceptual hash");
+        }
+        return findSimilar(hash, maxDistance, limit, imageId, candidate -> true);
+    }
+    
+    /**
+     * Find an already stored image that looks like a file about to be uploaded.
+     * Only images at least as large as the upload count, so a thumbnail never stands in for the original.
+     * @param metadata - metadata of the file, from extractMetadata
+     * @param maxDistance - maximum Hamming distance between perceptual hashes
+     * @return Closest existing image, or null if there is none within the distance
+     */
+    public Image findNearDuplicate(ImageMetadata metadata, int maxDistance) {
+        Long hash = metadata.getPerceptualHash();
+        if (hash == null || metadata.getWidth() == null || metadata.getHeight() == null) {
+            return null;
+        }
+        List<SimilarImage> similar = findSimilar(hash, maxDistance, 1, null, candidate -> {
+            ImageMetadata existing = candidate.getMetadata();
+            return existing != null && existing.getWidth() != null && existing.getHeight() != null
+                    && existing.getWidth() >= metadata.getWidth() && existing.getHeight() >= metadata.getHeight();
+        });
+        return similar.isEmpty() ? null : similar.get(0).getImage();
+    }
+    
+    private List<SimilarImage> findSimilar(long hash, int maxDistance, int limit, String excludedImageId,
+            Predicate<Image> accepted) {
+        if (maxDistance < 0 || maxDistance > MAX_SIMILARITY_DISTANCE) {
+            throw new AuthException("Distance must be between 0 and " + MAX_SIMILARITY_DISTANCE);
+        }
+        List<SimilarityIndex.Match> matches = similarityIndex.search(hash, maxDistance).stream()
+                .filter(match -> !match.imageId().equals(excludedImageId))
+                .toList();
+        
+        // Load candidates closest first, a batch at a time, so a wide search with a small limit
+        // reads only the documents it returns (plus any rejected or deleted ones)
+        int batchSize = Math.max(limit, SIMILARITY_BATCH_SIZE);
+        List<SimilarImage> similar = new ArrayList<>();
+        for (int from = 0; from < matches.size() && similar.size() < limit; from += batchSize) {
+            List<SimilarityIndex.Match> batch = matches.subList(from, Math.min(from + batchSize, matches.size()));
+            Map<String, Image> images = imageRepository.findAllById(batch.stream().map(SimilarityIndex.Match::imageId).toList())
+                    .stream()
+                    .collect(Collectors.toMap(Image::getId, Function.identity()));
+            for (SimilarityIndex.Match match : batch) {
+                Image image = images.get(match.imageId());
+                if (image != null && accepted.test(image)) {
+                    similar.add(new SimilarImage(image, match.distance()));
+                    if (similar.size() == limit) {
+                        break;
+                    }
+                }
+            }
+        }
+        return similar;
     }
     
     /**
@@ -71,6 +259,21 @@ public class ImageService {
                 .orElseThrow(() -> new AuthException("Image not found"));
     }
     
+    /**
+     * Record a negotiated variant on an image.
+     * Uses a targeted $set so concurrent renders of different formats do not overwrite each other.
+     * @param imageId - Image document ID
+     * @param format - variant format
+     * @param fileKey - S3 object key of the variant
+     */
+    public void addVariant(String imageId, ImageFormat format, String fileKey) {
+        mongoTemplate.updateFirst(
+                new Query(Criteria.where("id").is(imageId)),
+                new Update().set("variants." + format.getExtension(), fileKey),
+                Image.class
+        );
+    }
+    
     /**
      * Get paginated list of images
      * @param page - page number (0-indexed)
@@ -2,12 +2,32 @@ package com.example.image_process_api.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import com.example.image_process_api.dto.FiltersRequest;
 import com.example.image_process_api.dto.TransformationRequest;
 import com.example.image_process_api.entity.Image;
+import com.example.image_process_api.entity.ImageMetadata;
+import com.example.image_process_api.exception.AuthException;
+import com.example.image_process_api.exception.BlobNotFoundException;
+import com.example.image_process_api.util.ExifReader;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 @Service
@@ -17,65 +37,347 @@ public class ImageTransformationService {
     private ImageService imageService;
     
     @Autowired
-    private S3Service s3Service;
+    private StorageService storageService;
+    
+    @Autowired
+    private TiledImageProcessor tiledImageProcessor;
+    
+    @Autowired
+    private TransformScheduler transformScheduler;
     
     private static final String TEMP_DIR = "/tmp/image-process/";
     
+    // Quality used for lossy formats when the request does not specify one
+    private static final int DEFAULT_QUALITY = 85;
+    
+    // Lowest quality the size-targeted search will go down to
+    private static final int MIN_QUALITY = 10;
+    
     /**
      * Apply transformations to an image
      * @param imageId - ID of the image to transform
      * @param transformationRequest - transformations to apply
+     * @param requestedBy - user (or client address) the transform runs for, used for fair scheduling
      * @return Transformed image details
      */
-    public Image applyTransformations(String imageId, TransformationRequest transformationRequest) {
+    public Image applyTransformations(String imageId, TransformationRequest transformationRequest, String requestedBy) {
         // Get the original image
         Image originalImage = imageService.getImageById(imageId);
         
+        // Validate output options up front so bad input is reported as a client error
+        ImageFormat outputFormat = ImageFormat.fromName(
+                transformationRequest.getFormat() != null ? transformationRequest.getFormat() : "jpg");
+        Integer quality = transformationRequest.getQuality();
+        if (quality != null && (quality < 1 || quality > 100)) {
+            throw new AuthException("Quality must be between 1 and 100");
+        }
+        Long targetBytes = transformationRequest.getTargetBytes();
+        if (targetBytes != null) {
+            if (targetBytes <= 0) {
+                throw new AuthException("targetBytes must be positive");
+            }
+            if (!outputFormat.isLossy()) {
+                throw new AuthException("targetBytes requires a lossy output format (jpg, webp or avif)");
+            }
+        }
+        
+        // Wait for a slot; the scheduler caps concurrency so tiled work does not oversubscribe the CPUs
+        TransformScheduler.Permit permit = transformScheduler.acquire(requestedBy,
+                transformScheduler.estimateCost(originalImage.getMetadata(), transformationRequest));
+        
+        // Unique temp files: transforms run concurrently and must never share a path
+        Path inputFile = null;
+        Path intermediateFile = null;
+        Path outputFile = null;
         try {
-            // Create temp directory if not exists
-            Files.createDirectories(Paths.get(TEMP_DIR));
+            Path tempDirectory = Files.createDirectories(Paths.get(TEMP_DIR));
             
-            // Download image from S3
-            byte[] imageBytes = downloadImageFromUrl(originalImage.getFileUrl());
+            // Read the source from storage directly; its URL is not fetchable for private buckets or local stores
+            byte[] imageBytes = storageService.downloadFile(storageService.extractKey(originalImage.getFileUrl()));
             
-            // Create temp input file
-            String inputFilePath = TEMP_DIR + "input_" + System.currentTimeMillis() + ".jpg";
-            Files.write(Paths.get(inputFilePath), imageBytes);
+            // Large rasters get resize and color filters applied in parallel stripes first,
+            // leaving only the remaining operations for ImageMagick
+            TransformationRequest remainingRequest = transformationRequest;
+            BufferedImage tiled = applyTiledTransformations(imageBytes, originalImage.getMetadata(), transformationRequest);
+            if (tiled != null) {
+                inputFile = Files.createTempFile(tempDirectory, "input_", ".png");
+                writeIntermediatePng(tiled, inputFile.toString());
+                // Sepia stays with ImageMagick so its tone does not depend on the image size
+                boolean sepia = transformationRequest.getFilters() != null
+                        && Boolean.TRUE.equals(transformationRequest.getFilters().getSepia());
+                remainingRequest = new TransformationRequest(
+                        null,
+                        transformationRequest.getCrop(),
+                        transformationRequest.getRotate(),
+                        transformationRequest.getFormat(),
+                        sepia ? new FiltersRequest(null, true) : null,
+                        quality,
+                        targetBytes
+                );
+            } else {
+                // Create temp input file
+                inputFile = Files.createTempFile(tempDirectory, "input_", ".jpg");
+                Files.write(inputFile, imageBytes);
+            }
             
             // Apply transformations
-            String outputFormat = transformationRequest.getFormat() != null ? 
-                    transformationRequest.getFormat() : "jpg";
-            String outputFilePath = TEMP_DIR + "output_" + System.currentTimeMillis() + "." + outputFormat;
-            applyImageMagickTransformations(inputFilePath, outputFilePath, transformationRequest);
+            outputFile = Files.createTempFile(tempDirectory, "output_", "." + outputFormat.getExtension());
+            if (targetBytes != null) {
+                // Render once to ImageMagick's uncompressed native format, then only re-encode while searching
+                intermediateFile = Files.createTempFile(tempDirectory, "intermediate_", ".miff");
+                applyImageMagickTransformations(inputFile.toString(), intermediateFile.toString(), remainingRequest, null);
+                String intermediatePath = intermediateFile.toString();
+                encodeToTargetSize(outputFile, targetBytes, quality != null ? quality : 100,
+                        (candidateQuality, candidate) -> encode(intermediatePath, candidate.toString(), candidateQuality));
+            } else {
+                applyImageMagickTransformations(inputFile.toString(), outputFile.toString(), remainingRequest,
+                        outputFormat.isLossy() ? (quality != null ? quality : DEFAULT_QUALITY) : null);
+            }
             
             // Read transformed image
-            byte[] transformedBytes = Files.readAllBytes(Paths.get(outputFilePath));
+            byte[] transformedBytes = Files.readAllBytes(outputFile);
             
             // Determine output format
-            String outputFileName = "transformed_" + System.currentTimeMillis() + "." + outputFormat;
-            String mimeType = "image/" + outputFormat;
-            
-            // Upload transformed image to S3
-            s3Service.uploadFile(transformedBytes, outputFileName, mimeType);
+            String outputFileName = "transformed_" + System.currentTimeMillis() + "." + outputFormat.getExtension();
+            String mimeType = outputFormat.getMimeType();
             
-            // Clean up temp files
-            new File(inputFilePath).delete();
-            new File(outputFilePath).delete();
-            
-            // Save transformed image metadata to MongoDB
-            String uploadedImageUrl = imageService.uploadImage(transformedBytes, outputFileName, mimeType, null);
-            
-            return imageService.getImageById(imageService.getLastUploadedImageId());
+            // Upload transformed image and save its metadata to MongoDB
+            return imageService.storeImage(transformedBytes, outputFileName, mimeType, null);
             
+        } catch (BlobNotFoundException | AuthException e) {
+            // Keep the 404/400 mapping instead of reporting a server error
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Failed to transform image: " + e.getMessage());
+        } finally {
+            // Clean up temp files on failure too, or every ImageMagick error leaks them
+            deleteTempFiles(inputFile, intermediateFile, outputFile);
+            permit.close();
         }
     }
     
+    /**
+     * Re-encode an image into another format without changing its pixels
+     * @param sourceBytes - encoded source image
+     * @param metadata - source metadata, used to estimate the cost (may be null)
+     * @param format - target format
+     * @param requestedBy - user (or client address) the variant is rendered for
+     * @return encoded image bytes
+     */
+    public byte[] encodeVariant(byte[] sourceBytes, ImageMetadata metadata, ImageFormat format, String requestedBy) {
+        TransformScheduler.Permit permit = transformScheduler.acquire(requestedBy, transformScheduler.estimateCost(
+                metadata, new TransformationRequest(null, null, null, format.getExtension(), null, null, null)));
+        
+        Path inputFile = null;
+        Path outputFile = null;
+        try {
+            Path tempDirectory = Files.createDirectories(Paths.get(TEMP_DIR));
+            inputFile = Files.createTempFile(tempDirectory, "variant_input_", "");
+            outputFile = Files.createTempFile(tempDirectory, "variant_output_", "." + format.getExtension());
+            Files.write(inputFile, sourceBytes);
+            if (format.isLossy()) {
+                encode(inputFile.toString(), outputFile.toString(), DEFAULT_QUALITY);
+            } else {
+                runImageMagick(List.of("convert", inputFile.toString(), outputFile.toString()));
+            }
+            return Files.readAllBytes(outputFile);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to encode image variant: " + e.getMessage());
+        } finally {
+            deleteTempFiles(inputFile, outputFile);
+            permit.close();
+        }
+    }
+    
+    private void deleteTempFiles(Path... files) {
+        for (Path file : files) {
+            if (file == null) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // Best effort; a leftover file in the temp directory is not worth failing the request for
+            }
+        }
+    }
+    
+    /**
+     * Apply resize and grayscale in-process when the source is above the tiling threshold.
+     * The intermediate PNG carries no EXIF or ICC data, so images that rely on either, and
+     * anything that is not plain 8-bit sRGB, stay on the ImageMagick path.
+     * @param imageBytes - encoded source image
+     * @param metadata - metadata captured at upload (may be null for older images)
+     * @param request - transformations to apply
+     * @return transformed raster, or null if the image should go straight to ImageMagick
+     */
+    private BufferedImage applyTiledTransformations(byte[] imageBytes, ImageMetadata metadata, TransformationRequest request) throws Exception {
+        boolean resize = request.getResize() != null
+                && request.getResize().getWidth() != null
+                && request.getResize().getHeight() != null;
+        boolean grayscale = request.getFilters() != null && Boolean.TRUE.equals(request.getFilters().getGrayscale());
+        if (!resize && !grayscale) {
+            return null;
+        }
+        
+        // Dimensions recorded at upload avoid probing the file again for small images
+        if (metadata != null && metadata.getWidth() != null && metadata.getHeight() != null
+                && !tiledImageProcessor.shouldTile(metadata.getWidth(), metadata.getHeight())) {
+            return null;
+        }
+        
+        // ImageMagick keeps the orientation tag and color profile that a bare PNG would drop
+        String orientation = metadata != null && metadata.getOrientation() != null
+                ? metadata.getOrientation().toString()
+                : ExifReader.read(imageBytes).get("Orientation");
+        if ((orientation != null && !orientation.equals("1")) || ExifReader.hasColorProfile(imageBytes)) {
+            return null;
+        }
+        
+        // Otherwise read only the header so small images never get fully decoded here
+        try (ImageInputStream stream = ImageIO.createImageInputStream(new ByteArrayInputStream(imageBytes))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                if (!tiledImageProcessor.shouldTile(reader.getWidth(0), reader.getHeight(0))) {
+                    return null;
+                }
+                BufferedImage decoded;
+                try {
+                    if (!isPlainSrgb(reader)) {
+                        return null;
+                    }
+                    decoded = reader.read(0);
+                } catch (IOException | RuntimeException e) {
+                    // CMYK and YCCK JPEGs pass the header probe but cannot be decoded here
+                    return null;
+                }
+                BufferedImage image = tiledImageProcessor.toArgb(decoded);
+                if (resize) {
+                    int width = request.getResize().getWidth();
+                    int height = request.getResize().getHeight();
+                    image = tiledImageProcessor.resize(image, width, height, TiledImageProcessor.ResizeFilter.forResize(
+                            decoded.getColorModel(), decoded.getWidth(), decoded.getHeight(), width, height));
+                }
+                if (grayscale) {
+                    tiledImageProcessor.grayscale(image);
+                }
+                return image;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+    
+    /**
+     * Check that the decoded pixels will be 8-bit sRGB, which is all the ARGB raster can represent faithfully.
+     * Java treats gray images as linear, and CMYK or 16-bit sources would be converted lossily.
+     */
+    private boolean isPlainSrgb(ImageReader reader) throws IOException {
+        Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+        if (!types.hasNext()) {
+            return false;
+        }
+        ColorModel colorModel = types.next().getColorModel();
+        if (!colorModel.getColorSpace().isCS_sRGB()) {
+            return false;
+        }
+        for (int size : colorModel.getComponentSize()) {
+            if (size != 8) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Write an intermediate PNG with the fastest compression, since ImageMagick re-encodes it anyway
+     */
+    private void writeIntermediatePng(BufferedImage image, String path) throws Exception {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(new File(path))) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(1.0f);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+    
+    /**
+     * Encodes a candidate at a given quality
+     */
+    @FunctionalInterface
+    interface QualityEncoder {
+        void encode(int quality, Path output) throws Exception;
+    }
+    
+    /**
+     * Binary-search encoder quality for the largest output that fits a size budget.
+     * If even the minimum quality is too large, the smallest encoding is kept.
+     * @param outputPath - final output path
+     * @param targetBytes - size budget in bytes
+     * @param maxQuality - highest quality to consider
+     * @param encoder - writes a candidate encoding at a given quality; the candidate keeps the output extension
+     * @return quality of the kept encoding
+     */
+    static int encodeToTargetSize(Path outputPath, long targetBytes, int maxQuality, QualityEncoder encoder) throws Exception {
+        // Keep the output extension so ImageMagick picks the same encoder for candidates
+        String fileName = outputPath.getFileName().toString();
+        Path candidatePath = Files.createTempFile(outputPath.toAbsolutePath().getParent(), "candidate_",
+                fileName.substring(Math.max(0, fileName.lastIndexOf('.'))));
+        try {
+            int low = Math.min(MIN_QUALITY, maxQuality);
+            int high = maxQuality;
+            int bestQuality = -1;
+            
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                encoder.encode(mid, candidatePath);
+                if (Files.size(candidatePath) <= targetBytes) {
+                    bestQuality = mid;
+                    Files.move(candidatePath, outputPath, StandardCopyOption.REPLACE_EXISTING);
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            
+            if (bestQuality == -1) {
+                // Budget is unreachable; fall back to the smallest encoding we allow
+                bestQuality = Math.min(MIN_QUALITY, maxQuality);
+                encoder.encode(bestQuality, outputPath);
+            }
+            return bestQuality;
+        } finally {
+            Files.deleteIfExists(candidatePath);
+        }
+    }
+    
+    /**
+     * Encode an image at a fixed quality
+     */
+    private void encode(String inputPath, String outputPath, int quality) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add("convert");
+        command.add(inputPath);
+        command.add("-quality");
+        command.add(String.valueOf(quality));
+        command.add(outputPath);
+        runImageMagick(command);
+    }
+    
     /**
      * Apply ImageMagick transformations using ProcessBuilder
+     * @param quality - encoder quality, or null to use ImageMagick's default
      */
-    private void applyImageMagickTransformations(String inputPath, String outputPath, TransformationRequest request) throws Exception {
+    private void applyImageMagickTransformations(String inputPath, String outputPath, TransformationRequest request, Integer quality) throws Exception {
         List<String> command = new ArrayList<>();
         command.add("convert");
         command.add(inputPath);
@@ -121,9 +423,19 @@ public class ImageTransformationService {
             }
         }
         
-        command.add(outputPath);
+        if (quality != null) {
+            command.add("-quality");
+            command.add(quality.toString());
+        }
         
-        // Execute ImageMagick command
+        command.add(outputPath);
+        runImageMagick(command);
+    }
+    
+    /**
+     * Execute an ImageMagick command and fail on a non-zero exit code
+     */
+    private void runImageMagick(List<String> command) throws Exception {
         ProcessBuilder processBuilder = new ProcessBuilder(command);
         Process process = processBuilder.start();
         int exitCode = process.waitFor();
@@ -132,23 +444,4 @@ public class ImageTransformationService {
             throw new RuntimeException("ImageMagick conversion failed with exit code: " + exitCode);
         }
     }
-    
-    /**
-     * Download image from URL
-     */
-    private byte[] downloadImageFromUrl(String fileUrl) throws Exception {
-        java.net.URL url = new java.net.URL(fileUrl);
-        java.net.URLConnection connection = url.openConnection();
-        java.io.InputStream input = connection.getInputStream();
-        byte[] buffer = new byte[8192];
-        int bytesRead;
-        java.io.ByteArrayOutputStream output = new java.io.ByteArrayOutputStream();
-        
-        while ((bytesRead = input.read(buffer)) != -1) {
-            output.write(buffer, 0, bytesRead);
-        }
-        
-        input.close();
-        return output.toByteArray();
-    }
 }
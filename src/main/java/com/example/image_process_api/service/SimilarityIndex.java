@@ -0,0 +1,201 @@
+package com.example.image_process_api.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import com.example.image_process_api.entity.Image;
+import com.example.image_process_api.util.DHash;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory BK-tree over the perceptual hashes of all images.
+ *
+ * Hamming distance is a metric, so by the triangle inequality a search for hashes within k
+ * of a query only has to descend into children whose edge distance d from a node satisfies
+ * |d - distance(query, node)| <= k. Small k prunes almost the whole tree.
+ *
+ * The tree is built from MongoDB at startup and updated on local inserts. Images inserted
+ * by other nodes are picked up by a background catch-up query on recent uploads, so a
+ * search never waits on the database.
+ */
+@Service
+public class SimilarityIndex {
+    
+    // Allowance for clock skew and slow inserts when catching up on other nodes' uploads
+    private static final Duration CATCH_UP_OVERLAP = Duration.ofMinutes(1);
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Value("${similarity.catch-up-interval:10s}")
+    private Duration catchUpInterval;
+    
+    private final ScheduledExecutorService catchUpExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "similarity-catch-up");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Set<String> indexedIds = ConcurrentHashMap.newKeySet();
+    private Node root;
+    
+    // Upload time up to which the tree is known to be complete; null before the first load
+    private LocalDateTime syncedUpTo;
+    
+    /**
+     * A match from a similarity search
+     * @param imageId - ID of the matching image
+     * @param distance - Hamming distance to the query hash
+     */
+    public record Match(String imageId, int distance) {
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        catchUp();
+        long intervalMillis = Math.max(1, catchUpInterval.toMillis());
+        catchUpExecutor.scheduleWithFixedDelay(this::catchUpQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Add an image to the index; images without a hash (formats ImageIO cannot decode) are skipped
+     * @param image - saved image document
+     */
+    public void add(Image image) {
+        Long hash = image.getMetadata() != null ? image.getMetadata().getPerceptualHash() : null;
+        if (hash == null || !indexedIds.add(image.getId())) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (root == null) {
+                root = new Node(hash, image.getId());
+                return;
+            }
+            Node node = root;
+            while (true) {
+                int distance = DHash.distance(hash, node.hash);
+                if (distance == 0) {
+                    node.imageIds.add(image.getId());
+                    return;
+                }
+                if (node.children == null) {
+                    node.children = new Node[Long.SIZE + 1];
+                }
+                Node child = node.children[distance];
+                if (child == null) {
+                    node.children[distance] = new Node(hash, image.getId());
+                    return;
+                }
+                node = child;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Find all indexed images whose hash is within a Hamming distance of the given hash
+     * @param hash - perceptual hash to search around
+     * @param maxDistance - maximum Hamming distance (inclusive)
+     * @return matches, closest first
+     */
+    public List<Match> search(long hash, int maxDistance) {
+        List<Match> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (root == null) {
+                return matches;
+            }
+            Deque<Node> pending = new ArrayDeque<>();
+            pending.push(root);
+            while (!pending.isEmpty()) {
+                Node node = pending.pop();
+                int distance = DHash.distance(hash, node.hash);
+                if (distance <= maxDistance) {
+                    for (String imageId : node.imageIds) {
+                        matches.add(new Match(imageId, distance));
+                    }
+                }
+                if (node.children == null) {
+                    continue;
+                }
+                int from = Math.max(1, distance - maxDistance);
+                int to = Math.min(Long.SIZE, distance + maxDistance);
+                for (int edge = from; edge <= to; edge++) {
+                    if (node.children[edge] != null) {
+                        pending.push(node.children[edge]);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        matches.sort((a, b) -> Integer.compare(a.distance(), b.distance()));
+        return matches;
+    }
+    
+    /**
+     * Index every hashed image uploaded since the last sync, reading only the fields the tree needs
+     */
+    private synchronized void catchUp() {
+        LocalDateTime started = LocalDateTime.now();
+        
+        Query query = new Query(Criteria.where("metadata.perceptualHash").ne(null));
+        if (syncedUpTo != null) {
+            query.addCriteria(Criteria.where("uploadedAt").gte(syncedUpTo.minus(CATCH_UP_OVERLAP)));
+        }
+        query.fields().include("id", "metadata.perceptualHash");
+        
+        try (Stream<Image> images = mongoTemplate.stream(query, Image.class)) {
+            images.forEach(this::add);
+        }
+        syncedUpTo = started;
+    }
+    
+    private void catchUpQuietly() {
+        try {
+            catchUp();
+        } catch (RuntimeException e) {
+            // Keep the schedule alive; the next run covers this window again since syncedUpTo did not move
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        catchUpExecutor.shutdownNow();
+    }
+    
+    private static class Node {
+        private final long hash;
+        // Images with exactly this hash
+        private final List<String> imageIds = new ArrayList<>(1);
+        // Child at index d has Hamming distance d from this node (1-64); allocated with the first child
+        private Node[] children;
+        
+        Node(long hash, String imageId) {
+            this.hash = hash;
+            this.imageIds.add(imageId);
+        }
+    }
+}
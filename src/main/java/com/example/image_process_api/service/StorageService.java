@@ -0,0 +1,132 @@
+package com.example.image_process_api.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import com.example.image_process_api.exception.AuthException;
+import com.example.image_process_api.storage.BlobStore;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * File validation and storage access on top of the configured BlobStore (S3, local disk, memory or tiered)
+ */
+@Service
+public class StorageService {
+    
+    @Autowired
+    private BlobStore blobStore;
+    
+    // Allowed file extensions
+    private static final List<String> ALLOWED_EXTENSIONS = Arrays.asList(".png", ".jpg", ".jpeg", ".webp", ".avif");
+    
+    // Allowed MIME types
+    private static final List<String> ALLOWED_MIME_TYPES = Arrays.asList(
+            "image/png",
+            "image/jpeg",
+            "image/jpg",
+            "image/webp",
+            "image/avif"
+    );
+    
+    /**
+     * Store bytes under a caller-chosen key
+     * @param fileKey - object key
+     * @param fileData - byte array of the file
+     * @param contentType - MIME type of the file
+     * @return file URL
+     */
+    public String uploadObject(String fileKey, byte[] fileData, String contentType) {
+        blobStore.put(fileKey, fileData, contentType);
+        return blobStore.url(fileKey);
+    }
+    
+    /**
+     * Download a whole object
+     * @param fileKey - object key
+     * @return object bytes
+     */
+    public byte[] downloadFile(String fileKey) {
+        return blobStore.getBytes(fileKey);
+    }
+    
+    /**
+     * Get the size of a stored object
+     * @param fileKey - object key
+     * @return size in bytes
+     */
+    public long size(String fileKey) {
+        return blobStore.size(fileKey);
+    }
+    
+    /**
+     * Get the local file holding an object, when the store keeps one on disk
+     * @param fileKey - object key
+     * @return file path, or null if the object must be streamed
+     */
+    public Path localFile(String fileKey) {
+        return blobStore.localFile(fileKey);
+    }
+    
+    /**
+     * Stream part of an object to a channel without buffering the whole object
+     * @param fileKey - object key
+     * @param offset - first byte to send
+     * @param length - number of bytes to send
+     * @param target - destination channel
+     * @return number of bytes sent
+     */
+    public long transferTo(String fileKey, long offset, long length, WritableByteChannel target) throws IOException {
+        return blobStore.transferTo(fileKey, offset, length, target);
+    }
+    
+    /**
+     * Recover the object key from a URL recorded on an image
+     * @param fileUrl - file URL
+     * @return object key
+     */
+    public String extractKey(String fileUrl) {
+        String prefix = blobStore.url("");
+        if (fileUrl == null || !fileUrl.startsWith(prefix)) {
+            throw new AuthException("File is not stored in the configured storage");
+        }
+        return fileUrl.substring(prefix.length());
+    }
+    
+    /**
+     * Validate file format
+     * @param fileName - original filename
+     * @param contentType - MIME type of the file
+     */
+    public void validateFileFormat(String fileName, String contentType) {
+        if (fileName == null || fileName.isEmpty()) {
+            throw new AuthException("File name cannot be empty");
+        }
+        
+        // Check file extension
+        String fileExtension = getFileExtension(fileName).toLowerCase();
+        if (!ALLOWED_EXTENSIONS.contains(fileExtension)) {
+            throw new AuthException("Invalid file format. Only .png, .jpg, .jpeg, .webp and .avif are allowed");
+        }
+        
+        // Check MIME type
+        if (contentType == null || !ALLOWED_MIME_TYPES.contains(contentType.toLowerCase())) {
+            throw new AuthException("Invalid file type. Only image files are allowed");
+        }
+    }
+    
+    /**
+     * Get file extension from filename
+     * @param fileName - original filename
+     * @return file extension with dot (e.g., ".jpg")
+     */
+    private String getFileExtension(String fileName) {
+        int lastDotIndex = fileName.lastIndexOf(".");
+        if (lastDotIndex == -1 || lastDotIndex == fileName.length() - 1) {
+            return "";
+        }
+        return fileName.substring(lastDotIndex);
+    }
+}
@@ -0,0 +1,315 @@
+package com.example.image_process_api.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import jakarta.annotation.PreDestroy;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * In-process pixel operations for very large rasters.
+ *
+ * ImageMagick processes one image on a single core, so a huge resize or filter
+ * keeps the rest of the machine idle. Images above the configured pixel threshold
+ * are split into horizontal row stripes and processed on a dedicated ForkJoin pool;
+ * smaller images stay on the calling thread where the fork overhead is not worth it.
+ */
+@Service
+public class TiledImageProcessor {
+
+    // Minimum number of pixels per stripe before a task stops splitting
+    private static final int MIN_STRIPE_PIXELS = 64 * 1024;
+
+    private final ForkJoinPool pool;
+    private final long parallelThresholdPixels;
+
+    public TiledImageProcessor(
+            @Value("${image.processing.parallelism:0}") int parallelism,
+            @Value("${image.processing.parallel-threshold-pixels:4000000}") long parallelThresholdPixels) {
+        // A dedicated pool keeps tiling off the common pool used by the rest of the JVM
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.parallelThresholdPixels = parallelThresholdPixels;
+    }
+
+    /**
+     * Check whether an image is large enough to be processed in parallel
+     * @param width - image width in pixels
+     * @param height - image height in pixels
+     * @return true if the image should be split into stripes
+     */
+    public boolean shouldTile(int width, int height) {
+        return (long) width * height >= parallelThresholdPixels;
+    }
+
+    /**
+     * Copy any image into an ARGB raster backed by an int array
+     * @param source - decoded image
+     * @return ARGB copy of the image
+     */
+    public BufferedImage toArgb(BufferedImage source) {
+        int width = source.getWidth();
+        BufferedImage target = new BufferedImage(width, source.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = pixels(target);
+        run(source.getWidth(), source.getHeight(), (from, to) ->
+                source.getRGB(0, from, width, to - from, pixels, from * width, width));
+        return target;
+    }
+
+    /**
+     * Resize an ARGB image with a separable filter, the way ImageMagick's -resize does,
+     * so tiled and untiled transforms of the same request look alike
+     * @param source - ARGB image
+     * @param width - target width
+     * @param height - target height
+     * @param filter - resampling filter, usually ResizeFilter.forResize
+     * @return resized ARGB image
+     */
+    public BufferedImage resize(BufferedImage source, int width, int height, ResizeFilter filter) {
+        int srcWidth = source.getWidth();
+        int srcHeight = source.getHeight();
+        Contributions columns = contributions(filter, srcWidth, width);
+        Contributions rows = contributions(filter, srcHeight, height);
+
+        // Same pass order as ImageMagick: the axis scaled up the most (or down the least) goes first
+        if ((double) width / srcWidth > (double) height / srcHeight) {
+            return resizeRows(resizeColumns(source, width, columns), height, rows);
+        }
+        return resizeColumns(resizeRows(source, height, rows), width, columns);
+    }
+
+    /**
+     * Convert an ARGB image to grayscale in place using Rec. 709 luma
+     * @param image - ARGB image
+     */
+    public void grayscale(BufferedImage image) {
+        int[] pixels = pixels(image);
+        int width = image.getWidth();
+        run(width, image.getHeight(), (from, to) -> {
+            for (int i = from * width; i < to * width; i++) {
+                int p = pixels[i];
+                int luma = clamp(0.2126 * ((p >> 16) & 0xFF) + 0.7152 * ((p >> 8) & 0xFF) + 0.0722 * (p & 0xFF));
+                pixels[i] = (p & 0xFF000000) | (luma << 16) | (luma << 8) | luma;
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private void run(int width, int height, StripeOperation operation) {
+        run(width, height, (long) width * height, operation);
+    }
+
+    /**
+     * Run an operation over rows [0, height), in parallel stripes when the work is above the threshold
+     */
+    private void run(int width, int height, long workPixels, StripeOperation operation) {
+        if (workPixels < parallelThresholdPixels) {
+            operation.apply(0, height);
+            return;
+        }
+        int minRows = Math.max(1, MIN_STRIPE_PIXELS / Math.max(1, width));
+        pool.invoke(new StripeTask(operation, 0, height, minRows));
+    }
+
+    /**
+     * Horizontal pass: every row of the source becomes a row of the given width
+     */
+    private BufferedImage resizeColumns(BufferedImage source, int width, Contributions columns) {
+        int[] src = pixels(source);
+        int srcWidth = source.getWidth();
+        int height = source.getHeight();
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] dst = pixels(target);
+        // Split on the larger of the two rasters so huge sources still fan out when shrinking hard
+        run(width, height, Math.max((long) srcWidth, width) * height, (from, to) -> {
+            for (int y = from; y < to; y++) {
+                for (int x = 0; x < width; x++) {
+                    dst[y * width + x] = convolve(src, y * srcWidth + columns.start[x], 1, columns.weights[x]);
+                }
+            }
+        });
+        return target;
+    }
+
+    /**
+     * Vertical pass: every column of the source becomes a column of the given height
+     */
+    private BufferedImage resizeRows(BufferedImage source, int height, Contributions rows) {
+        int[] src = pixels(source);
+        int width = source.getWidth();
+        int srcHeight = source.getHeight();
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] dst = pixels(target);
+        run(width, height, (long) width * Math.max(srcHeight, height), (from, to) -> {
+            for (int y = from; y < to; y++) {
+                int offset = rows.start[y] * width;
+                for (int x = 0; x < width; x++) {
+                    dst[y * width + x] = convolve(src, offset + x, width, rows.weights[y]);
+                }
+            }
+        });
+        return target;
+    }
+
+    /**
+     * Precompute, for each target position, the first source position and the normalised filter weights.
+     * When shrinking, the filter is stretched by the scale factor so every source pixel contributes.
+     */
+    static Contributions contributions(ResizeFilter filter, int sourceSize, int targetSize) {
+        double factor = (double) targetSize / sourceSize;
+        double blur = Math.max(1 / factor, 1.0);
+        double support = blur * filter.support;
+        double scale = 1 / blur;
+        int[] start = new int[targetSize];
+        double[][] weights = new double[targetSize][];
+        for (int i = 0; i < targetSize; i++) {
+            double center = (i + 0.5) / factor;
+            int first = (int) Math.max(center - support + 0.5, 0);
+            int last = (int) Math.min(center + support + 0.5, sourceSize);
+            double[] w = new double[Math.max(1, last - first)];
+            double density = 0;
+            for (int n = 0; n < last - first; n++) {
+                w[n] = filter.weight(scale * (first + n - center + 0.5));
+                density += w[n];
+            }
+            if (density != 0 && density != 1) {
+                for (int n = 0; n < w.length; n++) {
+                    w[n] /= density;
+                }
+            }
+            start[i] = Math.min(first, sourceSize - 1);
+            weights[i] = w;
+        }
+        return new Contributions(start, weights);
+    }
+
+    /**
+     * Weighted sum of pixels along a row or column. Colors are weighted by alpha as well,
+     * so fully transparent pixels do not bleed their (meaningless) color into the edge.
+     */
+    private static int convolve(int[] src, int offset, int stride, double[] weights) {
+        double a = 0, r = 0, g = 0, b = 0, alphaSum = 0;
+        for (int n = 0; n < weights.length; n++) {
+            int p = src[offset + n * stride];
+            double weight = weights[n];
+            double alpha = weight * (p >>> 24) / 255.0;
+            a += weight * (p >>> 24);
+            r += alpha * ((p >> 16) & 0xFF);
+            g += alpha * ((p >> 8) & 0xFF);
+            b += alpha * (p & 0xFF);
+            alphaSum += alpha;
+        }
+        double gamma = Math.abs(alphaSum) < 1e-12 ? 0 : 1 / alphaSum;
+        return clamp(a) << 24 | clamp(r * gamma) << 16 | clamp(g * gamma) << 8 | clamp(b * gamma);
+    }
+
+    private static int clamp(double value) {
+        return (int) Math.max(0, Math.min(255, Math.round(value)));
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Resampling filters used by ImageMagick's -resize
+     */
+    public enum ResizeFilter {
+        // Windowed sinc with three lobes; sharp, used when shrinking opaque images
+        LANCZOS(3) {
+            @Override
+            double weight(double x) {
+                x = Math.abs(x);
+                return x < 3 ? sinc(x) * sinc(x / 3) : 0;
+            }
+        },
+        // Cubic with B = C = 1/3; no ringing on hard alpha edges, used when enlarging
+        MITCHELL(2) {
+            @Override
+            double weight(double x) {
+                x = Math.abs(x);
+                if (x < 1) {
+                    return (7 * x * x * x - 12 * x * x + 16.0 / 3) / 6;
+                }
+                if (x < 2) {
+                    return (-7.0 / 3 * x * x * x + 12 * x * x - 20 * x + 32.0 / 3) / 6;
+                }
+                return 0;
+            }
+        };
+
+        private final double support;
+
+        ResizeFilter(double support) {
+            this.support = support;
+        }
+
+        abstract double weight(double x);
+
+        /**
+         * Pick the filter ImageMagick uses by default: Mitchell for enlargements and for images
+         * with transparency or a palette, Lanczos otherwise
+         * @param colorModel - color model of the decoded source
+         * @param srcWidth - source width
+         * @param srcHeight - source height
+         * @param width - target width
+         * @param height - target height
+         * @return resampling filter
+         */
+        public static ResizeFilter forResize(ColorModel colorModel, int srcWidth, int srcHeight, int width, int height) {
+            boolean enlarging = (double) width / srcWidth * height / srcHeight > 1.0;
+            return enlarging || colorModel.hasAlpha() || colorModel instanceof IndexColorModel ? MITCHELL : LANCZOS;
+        }
+
+        private static double sinc(double x) {
+            if (x == 0) {
+                return 1;
+            }
+            double px = Math.PI * x;
+            return Math.sin(px) / px;
+        }
+    }
+
+    record Contributions(int[] start, double[][] weights) {
+    }
+
+    @FunctionalInterface
+    private interface StripeOperation {
+        void apply(int fromRow, int toRow);
+    }
+
+    /**
+     * Recursively halves a row range until stripes are small enough to run directly
+     */
+    private static class StripeTask extends RecursiveAction {
+        private final StripeOperation operation;
+        private final int fromRow;
+        private final int toRow;
+        private final int minRows;
+
+        StripeTask(StripeOperation operation, int fromRow, int toRow, int minRows) {
+            this.operation = operation;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.minRows = minRows;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow <= minRows) {
+                operation.apply(fromRow, toRow);
+                return;
+            }
+            int middle = (fromRow + toRow) >>> 1;
+            invokeAll(new StripeTask(operation, fromRow, middle, minRows),
+                    new StripeTask(operation, middle, toRow, minRows));
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.example.image_process_api.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import com.example.image_process_api.dto.TransformationRequest;
+import com.example.image_process_api.entity.Image;
+import com.example.image_process_api.entity.TransformLease;
+import com.example.image_process_api.exception.AuthException;
+import com.example.image_process_api.exception.TransformInProgressException;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Collapses identical concurrent transform requests into a single computation.
+ * Within a node, callers for the same source and canonical spec share one future.
+ * With cluster coalescing enabled, a Mongo lease additionally ensures only one node
+ * computes a given derivative while the others wait for its result.
+ * In both modes the result is recorded in transform_leases and reused by later identical
+ * requests until the TTL index removes it.
+ */
+@Service
+public class TransformCoalescingService {
+    
+    @Autowired
+    private ImageTransformationService imageTransformationService;
+    
+    @Autowired
+    private ImageService imageService;
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Value("${transform.coalescing.cluster-enabled:false}")
+    private boolean clusterEnabled;
+    
+    @Value("${transform.coalescing.lease-duration:60s}")
+    private Duration leaseDuration;
+    
+    @Value("${transform.coalescing.poll-interval:50ms}")
+    private Duration pollInterval;
+    
+    @Value("${transform.coalescing.max-poll-interval:1s}")
+    private Duration maxPollInterval;
+    
+    // How long a request thread may wait for someone else's transform before the client is told to retry
+    @Value("${transform.coalescing.max-wait:20s}")
+    private Duration maxWait;
+    
+    // Identifies this node as a lease owner
+    private final String nodeId = UUID.randomUUID().toString();
+    
+    private final ConcurrentHashMap<String, CompletableFuture<Image>> inFlight = new ConcurrentHashMap<>();
+    
+    // Renews leases while their transform is still running
+    private final ScheduledExecutorService leaseRenewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "transform-lease-renewer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /**
+     * Apply transformations, sharing the work with any identical request already in flight
+     * @param imageId - ID of the image to transform
+     * @param transformationRequest - transformations to apply
+     * @param requestedBy - user (or client address) the transform runs for
+     * @return Transformed image details
+     */
+    public Image transform(String imageId, TransformationRequest transformationRequest, String requestedBy) {
+        String key = imageId + ":" + canonicalSpec(transformationRequest);
+        
+        CompletableFuture<Image> future = new CompletableFuture<>();
+        CompletableFuture<Image> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return await(existing);
+        }
+        
+        try {
+            Image result = clusterEnabled
+                    ? transformWithLease(key, imageId, transformationRequest, requestedBy)
+                    : transformLocally(key, imageId, transformationRequest, requestedBy);
+            future.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+    
+    /**
+     * Build a stable description of a transform so equivalent requests map to the same key.
+     * Defaults are filled in and format aliases normalised (jpeg and jpg are the same output).
+     * @param request - transformations to apply
+     * @return canonical spec string
+     */
+    public String canonicalSpec(TransformationRequest request) {
+        StringBuilder spec = new StringBuilder();
+        if (request.getResize() != null && request.getResize().getWidth() != null && request.getResize().getHeight() != null) {
+            spec.append("resize=").append(request.getResize().getWidth()).append('x').append(request.getResize().getHeight()).append(';');
+        }
+        if (request.getCrop() != null && request.getCrop().getWidth() != null && request.getCrop().getHeight() != null
+                && request.getCrop().getX() != null && request.getCrop().getY() != null) {
+            spec.append("crop=").append(request.getCrop().getWidth()).append('x').append(request.getCrop().getHeight())
+                    .append('+').append(request.getCrop().getX()).append('+').append(request.getCrop().getY()).append(';');
+        }
+        // -90, 270 and 630 are the same rotation; a full turn is no rotation at all
+        int rotate = request.getRotate() != null ? Math.floorMod(request.getRotate(), 360) : 0;
+        if (rotate != 0) {
+            spec.append("rotate=").append(rotate).append(';');
+        }
+        if (request.getFilters() != null) {
+            if (Boolean.TRUE.equals(request.getFilters().getGrayscale())) {
+                spec.append("grayscale;");
+            }
+            if (Boolean.TRUE.equals(request.getFilters().getSepia())) {
+                spec.append("sepia;");
+            }
+        }
+        spec.append("format=").append(ImageFormat.fromName(request.getFormat() != null ? request.getFormat() : "jpg").getExtension()).append(';');
+        if (request.getQuality() != null) {
+            spec.append("quality=").append(request.getQuality()).append(';');
+        }
+        if (request.getTargetBytes() != null) {
+            spec.append("targetBytes=").append(request.getTargetBytes()).append(';');
+        }
+        return spec.toString();
+    }
+    
+    /**
+     * Reuse a recorded result or compute and record it, without taking a lease
+     */
+    private Image transformLocally(String key, String imageId, TransformationRequest request, String requestedBy) {
+        Image existing = recordedResult(key);
+        if (existing != null) {
+            return existing;
+        }
+        Image result = imageTransformationService.applyTransformations(imageId, request, requestedBy);
+        mongoTemplate.upsert(
+                new Query(Criteria.where("id").is(key)),
+                new Update().set("resultImageId", result.getId()).set("completedAt", Instant.now()).unset("expiresAt"),
+                TransformLease.class
+        );
+        return result;
+    }
+    
+    /**
+     * Look up the derivative recorded for a key
+     * @return the derivative, or null if none is recorded or it has since been deleted
+     */
+    private Image recordedResult(String key) {
+        TransformLease lease = mongoTemplate.findById(key, TransformLease.class);
+        if (lease == null || lease.getResultImageId() == null) {
+            return null;
+        }
+        try {
+            return imageService.getImageById(lease.getResultImageId());
+        } catch (AuthException e) {
+            // The derivative was removed; drop the stale record so it is computed again
+            mongoTemplate.remove(new Query(Criteria.where("id").is(key).and("resultImageId").is(lease.getResultImageId())),
+                    TransformLease.class);
+            return null;
+        }
+    }
+    
+    /**
+     * Compute a derivative at most once across the cluster.
+     * The node that wins the lease computes it and records the result; on every other node a
+     * single thread polls, backing off from poll-interval to max-poll-interval, until the result
+     * appears or the lease expires, in which case it tries to take the lease over. Other requests
+     * on that node wait on its future instead of polling themselves.
+     */
+    private Image transformWithLease(String key, String imageId, TransformationRequest request, String requestedBy) {
+        Instant deadline = Instant.now().plus(maxWait);
+        long sleepMillis = Math.max(1, pollInterval.toMillis());
+        long maxSleepMillis = Math.max(sleepMillis, maxPollInterval.toMillis());
+        while (true) {
+            Image existing = recordedResult(key);
+            if (existing != null) {
+                return existing;
+            }
+            
+            if (tryAcquire(key)) {
+                return computeUnderLease(key, imageId, request, requestedBy);
+            }
+            
+            if (Instant.now().isAfter(deadline)) {
+                throw inProgress();
+            }
+            try {
+                Thread.sleep(sleepMillis);
+                sleepMillis = Math.min(sleepMillis * 2, maxSleepMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for a coalesced transform");
+            }
+        }
+    }
+    
+    private Image computeUnderLease(String key, String imageId, TransformationRequest request, String requestedBy) {
+        long renewMillis = Math.max(1, leaseDuration.toMillis() / 3);
+        ScheduledFuture<?> renewal = leaseRenewer.scheduleAtFixedRate(
+                () -> extendLease(key), renewMillis, renewMillis, TimeUnit.MILLISECONDS);
+        try {
+            Image result = imageTransformationService.applyTransformations(imageId, request, requestedBy);
+            mongoTemplate.updateFirst(
+                    new Query(Criteria.where("id").is(key).and("owner").is(nodeId)),
+                    new Update().set("resultImageId", result.getId()).set("completedAt", Instant.now()).unset("expiresAt"),
+                    TransformLease.class
+            );
+            return result;
+        } catch (RuntimeException e) {
+            // Release immediately so waiting nodes can retry instead of sitting out the lease
+            mongoTemplate.remove(new Query(Criteria.where("id").is(key).and("owner").is(nodeId)
+                    .and("resultImageId").is(null)), TransformLease.class);
+            throw e;
+        } finally {
+            renewal.cancel(false);
+        }
+    }
+    
+    /**
+     * Take the lease if nobody holds it or the holder's lease has expired.
+     * When the document exists but does not match, the upsert collides on _id and we lose.
+     */
+    private boolean tryAcquire(String key) {
+        Instant now = Instant.now();
+        Query query = new Query(Criteria.where("id").is(key)
+                .and("resultImageId").is(null)
+                .orOperator(
+                        Criteria.where("expiresAt").lt(now),
+                        Criteria.where("owner").is(nodeId)
+                ));
+        Update update = new Update()
+                .set("owner", nodeId)
+                .set("expiresAt", now.plus(leaseDuration));
+        try {
+            mongoTemplate.findAndModify(query, update,
+                    FindAndModifyOptions.options().upsert(true).returnNew(true), TransformLease.class);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+    
+    private void extendLease(String key) {
+        mongoTemplate.updateFirst(
+                new Query(Criteria.where("id").is(key).and("owner").is(nodeId).and("resultImageId").is(null)),
+                new Update().set("expiresAt", Instant.now().plus(leaseDuration)),
+                TransformLease.class
+        );
+    }
+    
+    /**
+     * Wait for the identical transform already running on this node, for at most max-wait
+     */
+    private Image await(CompletableFuture<Image> future) {
+        try {
+            return future.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw inProgress();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a coalesced transform");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+    
+    private TransformInProgressException inProgress() {
+        // The result is kept once computed, so a retry after the transform finishes returns it straight away
+        return new TransformInProgressException("This transform is still being computed, retry shortly or submit it as a transform job",
+                Math.max(1, maxPollInterval.toSeconds()));
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        leaseRenewer.shutdownNow();
+    }
+}
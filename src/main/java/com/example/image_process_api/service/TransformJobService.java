@@ -0,0 +1,133 @@
+package com.example.image_process_api.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import com.example.image_process_api.dto.TransformationRequest;
+import com.example.image_process_api.entity.Image;
+import com.example.image_process_api.entity.TransformJob;
+import com.example.image_process_api.entity.TransformJobStatus;
+import com.example.image_process_api.exception.AuthException;
+import com.example.image_process_api.repository.TransformJobRepository;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Entry point for transforms on API nodes. Runs them inline, or hands them to the
+ * Mongo-backed work queue consumed by nodes running the "worker" profile.
+ */
+@Service
+public class TransformJobService {
+    
+    @Autowired
+    private TransformJobRepository transformJobRepository;
+    
+    @Autowired
+    private TransformCoalescingService transformCoalescingService;
+    
+    @Autowired
+    private ImageService imageService;
+    
+    @Autowired
+    private TransformScheduler transformScheduler;
+    
+    @Value("${transform.queue.enabled:false}")
+    private boolean queueEnabled;
+    
+    @Value("${transform.queue.await-timeout:10s}")
+    private Duration awaitTimeout;
+    
+    @Value("${transform.queue.poll-interval:250ms}")
+    private Duration pollInterval;
+    
+    /**
+     * Whether transforms are handed to worker nodes instead of running on this node
+     */
+    public boolean isQueueEnabled() {
+        return queueEnabled;
+    }
+    
+    /**
+     * Apply transformations on this node and wait for the result
+     * @param imageId - ID of the image to transform
+     * @param transformationRequest - transformations to apply
+     * @param requestedBy - user (or client address) requesting the transform
+     * @return Transformed image details
+     */
+    public Image transform(String imageId, TransformationRequest transformationRequest, String requestedBy) {
+        Image source = imageService.getImageById(imageId);
+        transformScheduler.charge(requestedBy, transformScheduler.estimateCost(source.getMetadata(), transformationRequest));
+        return transformCoalescingService.transform(imageId, transformationRequest, requestedBy);
+    }
+    
+    /**
+     * Queue a transform and wait at most await-timeout for a worker to finish it.
+     * Quick transforms thereby keep their synchronous response, while slow ones do not hold the request thread.
+     * @param imageId - ID of the image to transform
+     * @param transformationRequest - transformations to apply
+     * @param requestedBy - user (or client address) requesting the transform
+     * @return the job, COMPLETED or still PENDING/RUNNING when the wait ran out
+     */
+    public TransformJob submitAndAwait(String imageId, TransformationRequest transformationRequest, String requestedBy) {
+        TransformJob job = submit(imageId, transformationRequest, requestedBy);
+        Instant deadline = Instant.now().plus(awaitTimeout);
+        while (Instant.now().isBefore(deadline)) {
+            try {
+                Thread.sleep(pollInterval.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for transform job " + job.getId());
+            }
+            job = getJob(job.getId());
+            if (job.getStatus() == TransformJobStatus.COMPLETED) {
+                return job;
+            }
+            if (job.getStatus() == TransformJobStatus.FAILED) {
+                throw new RuntimeException("Failed to transform image: " + job.getError());
+            }
+        }
+        return job;
+    }
+    
+    /**
+     * Queue a transform for a worker
+     * @param imageId - ID of the image to transform
+     * @param transformationRequest - transformations to apply
+     * @param requestedBy - user (or client address) requesting the transform
+     * @return Queued job
+     */
+    public TransformJob submit(String imageId, TransformationRequest transformationRequest, String requestedBy) {
+        // Reject unknown images and invalid specs here, where they are still client errors
+        Image source = imageService.getImageById(imageId);
+        transformCoalescingService.canonicalSpec(transformationRequest);
+        
+        // Charge the rate limit on submission so a user cannot flood the queue
+        transformScheduler.charge(requestedBy, transformScheduler.estimateCost(source.getMetadata(), transformationRequest));
+        
+        Instant now = Instant.now();
+        return transformJobRepository.insert(new TransformJob(
+                null,
+                imageId,
+                transformationRequest,
+                requestedBy,
+                TransformJobStatus.PENDING,
+                null,
+                null,
+                0,
+                null,
+                null,
+                now,
+                now
+        ));
+    }
+    
+    /**
+     * Get a transform job by ID
+     * @param jobId - Job document ID
+     * @return Job details
+     */
+    public TransformJob getJob(String jobId) {
+        return transformJobRepository.findById(jobId)
+                .orElseThrow(() -> new AuthException("Transform job not found"));
+    }
+}
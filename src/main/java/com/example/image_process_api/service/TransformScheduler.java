@@ -0,0 +1,366 @@
+package com.example.image_process_api.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import com.example.image_process_api.dto.TransformationRequest;
+import com.example.image_process_api.entity.ImageMetadata;
+import com.example.image_process_api.exception.TooManyRequestsException;
+import com.example.image_process_api.exception.TransformInProgressException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shares transform capacity fairly between users.
+ *
+ * Every transform is priced in cost units (roughly one megapixel passing through one
+ * operation). Requests are first charged against a per-user token bucket, so a single user
+ * cannot submit more work than their refill rate allows. Admitted work then waits for one of
+ * the transform slots under weighted fair queuing (all users weigh the same): each request gets a virtual finish time of
+ * max(system virtual time, user's previous finish) + cost, and the smallest finish time runs
+ * next. A user with a deep backlog of expensive jobs keeps pushing their own finish times out,
+ * so another user's small request overtakes it instead of waiting behind the whole backlog.
+ * A request that waits longer than the maximum queue wait gives up its place and is answered
+ * with 503, so an overloaded node sheds work instead of holding request threads indefinitely.
+ *
+ * Requesters without a token are identified by client address, so there can be one entry per
+ * IP. Entries are dropped once they are idle (full bucket, nothing queued, no fairness debt),
+ * which loses no state, and metrics are tagged per user only for authenticated users; all
+ * anonymous clients share the "anonymous" tag.
+ */
+@Service
+public class TransformScheduler {
+
+    // Cost assumed for images stored before metadata extraction
+    private static final double UNKNOWN_MEGAPIXELS = 4.0;
+
+    // Smallest cost charged, so tiny images are not free
+    private static final double MIN_COST = 0.05;
+
+    // Metric tag shared by all requesters identified only by client address
+    static final String ANONYMOUS = "anonymous";
+
+    // How often idle users are looked for
+    private static final long SWEEP_INTERVAL_NANOS = Duration.ofMinutes(1).toNanos();
+
+    private final MeterRegistry meterRegistry;
+    private final int slots;
+    private final double bucketCapacity;
+    private final double refillPerSecond;
+    private final Duration maxQueueWait;
+
+    private final ConcurrentHashMap<String, UserState> users = new ConcurrentHashMap<>();
+    // Keyed by metric tag, so anonymous users share one set of meters
+    private final ConcurrentHashMap<String, UserMeters> meters = new ConcurrentHashMap<>();
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>(
+            Comparator.comparingDouble((Waiter waiter) -> waiter.finishTime).thenComparingLong(waiter -> waiter.sequence));
+    private final AtomicInteger running = new AtomicInteger();
+    private double virtualTime;
+    private long sequence;
+    private volatile long sweptAt = System.nanoTime();
+
+    public TransformScheduler(
+            MeterRegistry meterRegistry,
+            @Value("${image.processing.max-concurrent-transforms:0}") int maxConcurrentTransforms,
+            @Value("${transform.scheduling.bucket-capacity:500}") double bucketCapacity,
+            @Value("${transform.scheduling.refill-per-second:20}") double refillPerSecond,
+            @Value("${transform.scheduling.max-queue-wait:30s}") Duration maxQueueWait) {
+        this.meterRegistry = meterRegistry;
+        this.slots = maxConcurrentTransforms > 0 ? maxConcurrentTransforms : Runtime.getRuntime().availableProcessors();
+        this.bucketCapacity = bucketCapacity;
+        this.refillPerSecond = refillPerSecond;
+        this.maxQueueWait = maxQueueWait;
+        meterRegistry.gauge("transform.scheduler.running", running);
+    }
+
+    /**
+     * Estimate the cost of a transform from the source size and the requested operations
+     * @param metadata - source metadata captured at upload (may be null for older images)
+     * @param request - transformations to apply
+     * @return cost in megapixel-operations
+     */
+    public double estimateCost(ImageMetadata metadata, TransformationRequest request) {
+        double megapixels = metadata != null && metadata.getWidth() != null && metadata.getHeight() != null
+                ? (double) metadata.getWidth() * metadata.getHeight() / 1_000_000
+                : UNKNOWN_MEGAPIXELS;
+
+        // Decode and encode
+        double operations = 1.0;
+        if (request.getResize() != null && request.getResize().getWidth() != null && request.getResize().getHeight() != null) {
+            operations += 1.0;
+            // Upscaling works on the larger output raster
+            megapixels = Math.max(megapixels,
+                    (double) request.getResize().getWidth() * request.getResize().getHeight() / 1_000_000);
+        }
+        if (request.getCrop() != null) {
+            operations += 0.2;
+        }
+        if (request.getRotate() != null) {
+            // Right angles are pixel copies; other angles resample onto a larger canvas
+            operations += request.getRotate() % 90 == 0 ? 0.5 : 1.5;
+        }
+        if (request.getFilters() != null) {
+            if (Boolean.TRUE.equals(request.getFilters().getGrayscale())) {
+                operations += 0.3;
+            }
+            if (Boolean.TRUE.equals(request.getFilters().getSepia())) {
+                operations += 0.3;
+            }
+        }
+        ImageFormat format = ImageFormat.fromName(request.getFormat() != null ? request.getFormat() : "jpg");
+        if (format == ImageFormat.AVIF) {
+            operations += 2.0;
+        } else if (format == ImageFormat.WEBP) {
+            operations += 0.5;
+        }
+        if (request.getTargetBytes() != null) {
+            // Binary search over quality re-encodes about seven times
+            operations += 4.0;
+        }
+        return Math.max(MIN_COST, megapixels * operations);
+    }
+
+    /**
+     * Charge a transform against the user's token bucket
+     * @param userId - user (or client address) requesting the transform
+     * @param cost - estimated cost
+     */
+    public void charge(String userId, double cost) {
+        sweepIfDue();
+        // A single transform larger than the bucket is admitted once the bucket is full
+        double charged = Math.min(cost, bucketCapacity);
+        while (true) {
+            UserState state = user(userId);
+            synchronized (state) {
+                if (state.retired) {
+                    // Evicted as idle between the lookup and the lock; the fresh entry has a full bucket
+                    continue;
+                }
+                long now = System.nanoTime();
+                state.tokens = Math.min(bucketCapacity,
+                        state.tokens + (now - state.refilledAt) / 1e9 * refillPerSecond);
+                state.refilledAt = now;
+                if (state.tokens < charged) {
+                    state.meters.rejected.increment();
+                    long retryAfter = (long) Math.ceil((charged - state.tokens) / refillPerSecond);
+                    throw new TooManyRequestsException("Transform rate limit exceeded, retry in " + retryAfter + "s", retryAfter);
+                }
+                state.tokens -= charged;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Wait for a transform slot in fair-queuing order
+     * @param userId - user (or client address) the work is done for
+     * @param cost - estimated cost
+     * @return permit to close when the transform has finished
+     * @throws TransformInProgressException if no slot frees up within the maximum queue wait
+     */
+    public Permit acquire(String userId, double cost) {
+        sweepIfDue();
+        UserState state;
+        long enqueuedAt = System.nanoTime();
+        Waiter waiter;
+        synchronized (this) {
+            // Looked up under the scheduler lock, which eviction also holds, so the entry stays live while it is queued
+            state = user(userId);
+            double start = Math.max(virtualTime, state.lastFinishTime);
+            state.lastFinishTime = start + cost;
+            waiter = new Waiter(state.lastFinishTime, sequence++);
+            queue.add(waiter);
+            state.queued++;
+            state.meters.queued.incrementAndGet();
+            dispatch();
+            long deadline = enqueuedAt + maxQueueWait.toNanos();
+            try {
+                while (!waiter.granted) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        abandon(state, waiter, cost);
+                        state.meters.rejected.increment();
+                        long retryAfter = Math.max(1, maxQueueWait.toSeconds());
+                        throw new TransformInProgressException(
+                                "All transform slots are busy, retry in " + retryAfter + "s", retryAfter);
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (waiter.granted) {
+                    release();
+                } else {
+                    abandon(state, waiter, cost);
+                }
+                throw new RuntimeException("Interrupted while waiting for a transform slot");
+            } finally {
+                state.queued--;
+                state.meters.queued.decrementAndGet();
+            }
+        }
+        state.meters.waitTime.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+        return new Permit();
+    }
+
+    /**
+     * Take a waiter that never got a slot out of the queue. If it was the user's latest request,
+     * its cost is taken back off their finish time, so work that never ran does not count against them.
+     */
+    private void abandon(UserState state, Waiter waiter, double cost) {
+        queue.remove(waiter);
+        if (state.lastFinishTime == waiter.finishTime) {
+            state.lastFinishTime -= cost;
+        }
+    }
+
+    /**
+     * Start queued work while slots are free
+     */
+    private synchronized void dispatch() {
+        boolean granted = false;
+        while (running.get() < slots && !queue.isEmpty()) {
+            Waiter next = queue.poll();
+            // Self-clocked: system virtual time follows the finish time of the work last started
+            virtualTime = Math.max(virtualTime, next.finishTime);
+            next.granted = true;
+            running.incrementAndGet();
+            granted = true;
+        }
+        if (granted) {
+            notifyAll();
+        }
+    }
+
+    private synchronized void release() {
+        running.decrementAndGet();
+        dispatch();
+    }
+
+    private UserState user(String userId) {
+        return users.computeIfAbsent(userId != null ? userId : ANONYMOUS, UserState::new);
+    }
+
+    private void sweepIfDue() {
+        long now = System.nanoTime();
+        if (now - sweptAt >= SWEEP_INTERVAL_NANOS) {
+            sweptAt = now;
+            evictIdleUsers();
+        }
+    }
+
+    /**
+     * Drop users whose entry holds nothing a fresh one would not: a refilled bucket, no queued
+     * work and a finish time the system virtual time has already passed. Per-user meters of
+     * evicted authenticated users are removed from the registry as well.
+     */
+    synchronized void evictIdleUsers() {
+        long now = System.nanoTime();
+        Iterator<UserState> iterator = users.values().iterator();
+        while (iterator.hasNext()) {
+            UserState state = iterator.next();
+            synchronized (state) {
+                double tokens = state.tokens + (now - state.refilledAt) / 1e9 * refillPerSecond;
+                if (state.queued > 0 || tokens < bucketCapacity || state.lastFinishTime > virtualTime) {
+                    continue;
+                }
+                state.retired = true;
+                if (!ANONYMOUS.equals(state.meters.tag)) {
+                    // Authenticated tags belong to exactly one user; removed before the entry so a
+                    // returning user registers fresh meters
+                    meters.remove(state.meters.tag);
+                    meterRegistry.remove(state.meters.queueDepth);
+                    meterRegistry.remove(state.meters.waitTime);
+                    meterRegistry.remove(state.meters.rejected);
+                }
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Metric tag for a requester: the user ID when authenticated, otherwise the shared anonymous tag
+     */
+    static String metricTag(String userId) {
+        return userId == null || userId.startsWith("ip:") ? ANONYMOUS : userId;
+    }
+
+    /**
+     * A held transform slot
+     */
+    public final class Permit implements AutoCloseable {
+        private boolean closed;
+
+        private Permit() {
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release();
+            }
+        }
+    }
+
+    private static final class Waiter {
+        private final double finishTime;
+        private final long sequence;
+        private boolean granted;
+
+        Waiter(double finishTime, long sequence) {
+            this.finishTime = finishTime;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Token bucket and fair-queuing position of one user
+     */
+    private final class UserState {
+        private double tokens = bucketCapacity;
+        private long refilledAt = System.nanoTime();
+        private double lastFinishTime;
+        // Requests of this user waiting for a slot, guarded by the scheduler lock
+        private int queued;
+        private boolean retired;
+        private final UserMeters meters;
+
+        UserState(String userId) {
+            this.meters = TransformScheduler.this.meters.computeIfAbsent(metricTag(userId), UserMeters::new);
+        }
+    }
+
+    /**
+     * Meters of one metric tag: a single authenticated user, or all anonymous users together
+     */
+    private final class UserMeters {
+        private final String tag;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final Gauge queueDepth;
+        private final Timer waitTime;
+        private final Counter rejected;
+
+        UserMeters(String tag) {
+            this.tag = tag;
+            this.queueDepth = Gauge.builder("transform.scheduler.queue.depth", queued, AtomicInteger::get)
+                    .tag("user", tag)
+                    .register(meterRegistry);
+            this.waitTime = Timer.builder("transform.scheduler.wait")
+                    .tag("user", tag)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry);
+            this.rejected = Counter.builder("transform.scheduler.rejected")
+                    .tag("user", tag)
+                    .register(meterRegistry);
+        }
+    }
+}
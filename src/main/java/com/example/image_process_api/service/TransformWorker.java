@@ -0,0 +1,184 @@
+package com.example.image_process_api.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import com.example.image_process_api.entity.Image;
+import com.example.image_process_api.entity.TransformJob;
+import com.example.image_process_api.entity.TransformJobStatus;
+import com.example.image_process_api.exception.AuthException;
+import com.example.image_process_api.exception.BlobNotFoundException;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Consumes the transform_jobs queue on nodes started with the "worker" profile.
+ * Jobs are claimed with findAndModify leases, kept alive by heartbeats, and retried
+ * on another worker when a lease expires, up to a maximum number of attempts.
+ */
+@Component
+@Profile("worker")
+public class TransformWorker {
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Autowired
+    private TransformCoalescingService transformCoalescingService;
+    
+    @Value("${transform.worker.lease-duration:60s}")
+    private Duration leaseDuration;
+    
+    @Value("${transform.worker.max-attempts:3}")
+    private int maxAttempts;
+    
+    private final String workerId = UUID.randomUUID().toString();
+    private final ExecutorService executor;
+    private final Semaphore slots;
+    
+    // Jobs this worker is running, renewed on every heartbeat
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+    
+    public TransformWorker(@Value("${transform.worker.concurrency:0}") int concurrency) {
+        int threads = concurrency > 0 ? concurrency : Runtime.getRuntime().availableProcessors();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "transform-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.slots = new Semaphore(threads);
+    }
+    
+    /**
+     * Claim jobs while there are free slots
+     */
+    @Scheduled(fixedDelayString = "${transform.worker.poll-interval:1s}")
+    public void poll() {
+        failExhaustedJobs();
+        while (slots.tryAcquire()) {
+            TransformJob job = claim();
+            if (job == null) {
+                slots.release();
+                return;
+            }
+            running.add(job.getId());
+            executor.execute(() -> {
+                try {
+                    process(job);
+                } finally {
+                    running.remove(job.getId());
+                    slots.release();
+                }
+            });
+        }
+    }
+    
+    /**
+     * Extend the leases of all jobs this worker is still running
+     */
+    @Scheduled(fixedDelayString = "${transform.worker.heartbeat-interval:15s}")
+    public void heartbeat() {
+        if (running.isEmpty()) {
+            return;
+        }
+        mongoTemplate.updateMulti(
+                new Query(Criteria.where("id").in(running).and("owner").is(workerId)
+                        .and("status").is(TransformJobStatus.RUNNING)),
+                new Update().set("leaseExpiresAt", Instant.now().plus(leaseDuration)),
+                TransformJob.class
+        );
+    }
+    
+    /**
+     * Atomically take the oldest pending job, or a running one whose worker stopped heartbeating
+     * @return claimed job, or null if the queue is empty
+     */
+    private TransformJob claim() {
+        Instant now = Instant.now();
+        Query query = new Query(new Criteria().andOperator(
+                Criteria.where("attempts").lt(maxAttempts),
+                new Criteria().orOperator(
+                        Criteria.where("status").is(TransformJobStatus.PENDING),
+                        Criteria.where("status").is(TransformJobStatus.RUNNING).and("leaseExpiresAt").lt(now)
+                )))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"));
+        Update update = new Update()
+                .set("status", TransformJobStatus.RUNNING)
+                .set("owner", workerId)
+                .set("leaseExpiresAt", now.plus(leaseDuration))
+                .set("updatedAt", now)
+                .inc("attempts", 1);
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), TransformJob.class);
+    }
+    
+    private void process(TransformJob job) {
+        try {
+            // Rate limits were charged when the job was submitted; here the job only queues fairly for a slot
+            Image result = transformCoalescingService.transform(job.getImageId(), job.getRequest(), job.getRequestedBy());
+            finish(job, new Update()
+                    .set("status", TransformJobStatus.COMPLETED)
+                    .set("resultImageId", result.getId())
+                    .unset("leaseExpiresAt"));
+        } catch (RuntimeException e) {
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            // Client errors and missing sources fail the same way on every attempt; anything else is retried
+            boolean permanent = e instanceof AuthException || e instanceof BlobNotFoundException;
+            boolean retry = !permanent && job.getAttempts() < maxAttempts;
+            finish(job, new Update()
+                    .set("status", retry ? TransformJobStatus.PENDING : TransformJobStatus.FAILED)
+                    .set("error", error)
+                    .unset("owner")
+                    .unset("leaseExpiresAt"));
+        }
+    }
+    
+    /**
+     * Record the outcome, but only if this worker still holds the lease;
+     * if it expired and another worker took the job over, that worker owns the outcome
+     */
+    private void finish(TransformJob job, Update update) {
+        mongoTemplate.updateFirst(
+                new Query(Criteria.where("id").is(job.getId()).and("owner").is(workerId)
+                        .and("status").is(TransformJobStatus.RUNNING)),
+                update.set("updatedAt", Instant.now()),
+                TransformJob.class
+        );
+    }
+    
+    /**
+     * Jobs whose last attempt's worker died are never claimable again, so mark them failed
+     */
+    private void failExhaustedJobs() {
+        mongoTemplate.updateMulti(
+                new Query(Criteria.where("status").is(TransformJobStatus.RUNNING)
+                        .and("leaseExpiresAt").lt(Instant.now())
+                        .and("attempts").gte(maxAttempts)),
+                new Update()
+                        .set("status", TransformJobStatus.FAILED)
+                        .set("error", "Lease expired after " + maxAttempts + " attempts")
+                        .unset("leaseExpiresAt")
+                        .set("updatedAt", Instant.now()),
+                TransformJob.class
+        );
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
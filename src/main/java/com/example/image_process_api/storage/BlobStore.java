@@ -0,0 +1,92 @@
+package com.example.image_process_api.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * Storage backend for image bytes, selected by the storage.type property.
+ * Keys are slash-separated relative paths such as "blobs/<sha256>".
+ */
+public interface BlobStore {
+
+    /**
+     * Store bytes under a key, replacing any existing object
+     * @param key - object key
+     * @param data - object bytes
+     * @param contentType - MIME type of the object
+     */
+    void put(String key, byte[] data, String contentType);
+
+    /**
+     * Open a stream over part of an object
+     * @param key - object key
+     * @param offset - first byte to read
+     * @param length - number of bytes to read, or -1 to read to the end
+     * @return stream the caller must close
+     */
+    InputStream openStream(String key, long offset, long length);
+
+    /**
+     * Get the size of an object
+     * @param key - object key
+     * @return size in bytes
+     */
+    long size(String key);
+
+    /**
+     * Remove an object if it exists
+     * @param key - object key
+     */
+    void delete(String key);
+
+    /**
+     * Build the URL recorded on image documents for an object
+     * @param key - object key
+     * @return object URL
+     */
+    String url(String key);
+
+    /**
+     * Read a whole object into memory
+     * @param key - object key
+     * @return object bytes
+     */
+    default byte[] getBytes(String key) {
+        try (InputStream input = openStream(key, 0, -1)) {
+            return input.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + key, e);
+        }
+    }
+
+    /**
+     * Copy part of an object to a channel. File-backed stores override this
+     * with FileChannel.transferTo so the kernel moves the bytes without a user-space copy.
+     * @param key - object key
+     * @param offset - first byte to send
+     * @param length - number of bytes to send
+     * @param target - destination channel
+     * @return number of bytes sent
+     */
+    default long transferTo(String key, long offset, long length, WritableByteChannel target) throws IOException {
+        try (InputStream input = openStream(key, offset, length)) {
+            OutputStream output = Channels.newOutputStream(target);
+            return input.transferTo(output);
+        }
+    }
+
+    /**
+     * Get the local file holding an object, if this store keeps one.
+     * Lets the web layer hand the file to the container for sendfile.
+     * @param key - object key
+     * @return file path, or null if the object is not available on local disk
+     */
+    default Path localFile(String key) {
+        return null;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.image_process_api.storage;
+
+import com.example.image_process_api.exception.BlobNotFoundException;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps objects on the heap. Intended for local development and tests; contents are lost on restart.
+ */
+public class InMemoryBlobStore implements BlobStore {
+
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+
+    @Override
+    public void put(String key, byte[] data, String contentType) {
+        objects.put(key, data.clone());
+    }
+
+    @Override
+    public InputStream openStream(String key, long offset, long length) {
+        byte[] data = bytes(key);
+        int start = (int) Math.min(offset, data.length);
+        int count = length >= 0 ? (int) Math.min(length, data.length - start) : data.length - start;
+        return new ByteArrayInputStream(data, start, count);
+    }
+
+    @Override
+    public long size(String key) {
+        return bytes(key).length;
+    }
+
+    @Override
+    public void delete(String key) {
+        objects.remove(key);
+    }
+
+    @Override
+    public String url(String key) {
+        return "memory://" + key;
+    }
+
+    @Override
+    public byte[] getBytes(String key) {
+        return bytes(key).clone();
+    }
+
+    private byte[] bytes(String key) {
+        byte[] data = objects.get(key);
+        if (data == null) {
+            throw new BlobNotFoundException(key);
+        }
+        return data;
+    }
+}
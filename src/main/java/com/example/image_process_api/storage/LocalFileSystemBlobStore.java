@@ -0,0 +1,170 @@
+package com.example.image_process_api.storage;
+
+import com.example.image_process_api.exception.BlobNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Stores objects as files under a root directory.
+ * Reads to the network use FileChannel.transferTo, which lets the kernel send
+ * file pages directly (sendfile) instead of copying them through the heap.
+ */
+public class LocalFileSystemBlobStore implements BlobStore {
+
+    private final Path root;
+
+    public LocalFileSystemBlobStore(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(this.root);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create storage directory " + this.root, e);
+        }
+    }
+
+    @Override
+    public void put(String key, byte[] data, String contentType) {
+        Path target = resolve(key);
+        try {
+            Files.createDirectories(target.getParent());
+            // Write to a temp file and rename so readers never see a partial object
+            Path temp = Files.createTempFile(target.getParent(), ".upload", ".tmp");
+            Files.write(temp, data);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write " + key, e);
+        }
+    }
+
+    @Override
+    public InputStream openStream(String key, long offset, long length) {
+        try {
+            FileChannel channel = FileChannel.open(resolve(key), StandardOpenOption.READ);
+            channel.position(offset);
+            InputStream input = Channels.newInputStream(channel);
+            return length >= 0 ? new BoundedInputStream(input, length) : input;
+        } catch (NoSuchFileException e) {
+            throw new BlobNotFoundException(key);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + key, e);
+        }
+    }
+
+    @Override
+    public long size(String key) {
+        try {
+            return Files.size(resolve(key));
+        } catch (NoSuchFileException e) {
+            throw new BlobNotFoundException(key);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + key, e);
+        }
+    }
+
+    @Override
+    public void delete(String key) {
+        try {
+            Files.deleteIfExists(resolve(key));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete " + key, e);
+        }
+    }
+
+    @Override
+    public String url(String key) {
+        return "local://" + key;
+    }
+
+    @Override
+    public long transferTo(String key, long offset, long length, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(resolve(key), StandardOpenOption.READ)) {
+            long end = length >= 0 ? Math.min(channel.size(), offset + length) : channel.size();
+            long position = offset;
+            // transferTo may send fewer bytes than requested, so loop until the range is done
+            while (position < end) {
+                long sent = channel.transferTo(position, end - position, target);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+            return position - offset;
+        } catch (NoSuchFileException e) {
+            throw new BlobNotFoundException(key);
+        }
+    }
+
+    @Override
+    public Path localFile(String key) {
+        Path path = resolve(key);
+        return Files.isRegularFile(path) ? path : null;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Resolve a key to a file, rejecting keys that escape the root directory
+     * @param key - object key
+     * @return file path
+     */
+    public Path resolve(String key) {
+        Path path = root.resolve(key).normalize();
+        if (!path.startsWith(root) || path.equals(root)) {
+            throw new IllegalArgumentException("Invalid storage key: " + key);
+        }
+        return path;
+    }
+
+    /**
+     * Limits a stream to a fixed number of bytes
+     */
+    private static class BoundedInputStream extends InputStream {
+        private final InputStream input;
+        private long remaining;
+
+        BoundedInputStream(InputStream input, long remaining) {
+            this.input = input;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int value = input.read();
+            if (value != -1) {
+                remaining--;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = input.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.image_process_api.storage;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import com.example.image_process_api.exception.BlobNotFoundException;
+import java.io.InputStream;
+
+/**
+ * Stores objects in an AWS S3 bucket
+ */
+public class S3BlobStore implements BlobStore {
+
+    private final S3Client s3Client;
+    private final String bucketName;
+    private final String region;
+
+    public S3BlobStore(S3Client s3Client, String bucketName, String region) {
+        this.s3Client = s3Client;
+        this.bucketName = bucketName;
+        this.region = region;
+    }
+
+    @Override
+    public void put(String key, byte[] data, String contentType) {
+        try {
+            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .contentType(contentType)
+                    .build();
+            s3Client.putObject(putObjectRequest, RequestBody.fromBytes(data));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to upload file to S3: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public InputStream openStream(String key, long offset, long length) {
+        GetObjectRequest.Builder request = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key);
+        // Ask S3 for just the requested bytes instead of discarding the rest client-side
+        if (offset > 0 || length >= 0) {
+            request.range("bytes=" + offset + "-" + (length >= 0 ? String.valueOf(offset + length - 1) : ""));
+        }
+        try {
+            return s3Client.getObject(request.build());
+        } catch (NoSuchKeyException e) {
+            throw new BlobNotFoundException(key);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to download file from S3: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public long size(String key) {
+        try {
+            return s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .build())
+                    .contentLength();
+        } catch (S3Exception e) {
+            // HEAD responses have no body, so a missing key surfaces as a bare 404
+            if (e.statusCode() == 404) {
+                throw new BlobNotFoundException(key);
+            }
+            throw new RuntimeException("Failed to read file metadata from S3: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void delete(String key) {
+        s3Client.deleteObject(DeleteObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .build());
+    }
+
+    @Override
+    public String url(String key) {
+        return String.format("https://%s.s3.%s.amazonaws.com/%s",
+                bucketName, region, key);
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.image_process_api.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Fronts a remote store (S3) with a local disk cache for hot objects.
+ * Writes go through to the origin and populate the cache. Reads are served from
+ * local disk, with zero-copy transfers, once an object has been fetched. The cache
+ * is bounded by total bytes and evicts the least recently used objects first.
+ */
+public class TieredBlobStore implements BlobStore {
+
+    private final LocalFileSystemBlobStore cache;
+    private final BlobStore origin;
+    private final long maxCacheBytes;
+
+    // Cached keys and their sizes, in access order so the eldest entry is the LRU victim
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    // Keys being read right now and how many readers hold each; eviction leaves these alone
+    private final Map<String, Integer> pins = new HashMap<>();
+
+    public TieredBlobStore(LocalFileSystemBlobStore cache, BlobStore origin, long maxCacheBytes) {
+        this.cache = cache;
+        this.origin = origin;
+        this.maxCacheBytes = maxCacheBytes;
+        loadExistingEntries();
+    }
+
+    @Override
+    public void put(String key, byte[] data, String contentType) {
+        origin.put(key, data, contentType);
+        if (data.length <= maxCacheBytes) {
+            cache.put(key, data, contentType);
+            record(key, data.length);
+        }
+    }
+
+    @Override
+    public InputStream openStream(String key, long offset, long length) {
+        if (!pin(key)) {
+            return origin.openStream(key, offset, length);
+        }
+        // Only the open needs the pin: an open handle keeps reading even if the file is evicted afterwards
+        try {
+            return cache.openStream(key, offset, length);
+        } finally {
+            unpin(key);
+        }
+    }
+
+    @Override
+    public long size(String key) {
+        synchronized (this) {
+            Long size = entries.get(key);
+            if (size != null) {
+                return size;
+            }
+        }
+        return origin.size(key);
+    }
+
+    @Override
+    public void delete(String key) {
+        origin.delete(key);
+        synchronized (this) {
+            Long size = entries.remove(key);
+            if (size != null) {
+                cachedBytes -= size;
+            }
+        }
+        cache.delete(key);
+    }
+
+    @Override
+    public String url(String key) {
+        return origin.url(key);
+    }
+
+    @Override
+    public long transferTo(String key, long offset, long length, WritableByteChannel target) throws IOException {
+        if (!pin(key)) {
+            return origin.transferTo(key, offset, length, target);
+        }
+        try {
+            return cache.transferTo(key, offset, length, target);
+        } finally {
+            unpin(key);
+        }
+    }
+
+    /**
+     * Cached files are never handed out for sendfile: the container opens the path after the
+     * response is committed, when the pin can no longer cover it, and eviction could delete the
+     * file in between. Callers fall back to transferTo(), which still reads the cached file with
+     * a zero-copy channel transfer while it holds the pin.
+     */
+    @Override
+    public Path localFile(String key) {
+        return null;
+    }
+
+    /**
+     * Make sure an object is on local disk, fetching it from the origin on a miss, and keep it
+     * there until unpin() is called. Without the pin a concurrent put could evict the file
+     * between this check and the read, turning a cache hit into a spurious not-found.
+     * @param key - object key
+     * @return false if the object is too large to cache and must be read from the origin
+     */
+    private boolean pin(String key) {
+        synchronized (this) {
+            if (entries.get(key) != null) {
+                pins.merge(key, 1, Integer::sum);
+                return true;
+            }
+        }
+        long size = origin.size(key);
+        if (size > maxCacheBytes) {
+            return false;
+        }
+        // Concurrent misses may both fetch; the cache write is an atomic rename so either copy wins cleanly
+        cache.put(key, origin.getBytes(key), null);
+        synchronized (this) {
+            pins.merge(key, 1, Integer::sum);
+            record(key, size);
+        }
+        return true;
+    }
+
+    private synchronized void unpin(String key) {
+        pins.computeIfPresent(key, (pinned, count) -> count > 1 ? count - 1 : null);
+        // Eviction may have been held back by this pin
+        evict();
+    }
+
+    private synchronized void record(String key, long size) {
+        Long previous = entries.put(key, size);
+        cachedBytes += size - (previous != null ? previous : 0);
+        evict();
+    }
+
+    /**
+     * Drop least recently used objects until the cache fits its byte budget.
+     * Pinned objects are skipped, so the cache can run over budget while they are being read.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (cachedBytes > maxCacheBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            if (pins.containsKey(eldest.getKey())) {
+                continue;
+            }
+            iterator.remove();
+            cachedBytes -= eldest.getValue();
+            cache.delete(eldest.getKey());
+        }
+    }
+
+    /**
+     * Rebuild the index from files left by a previous run, oldest first, so a restart keeps a warm cache
+     */
+    private synchronized void loadExistingEntries() {
+        Path root = cache.getRoot();
+        try (Stream<Path> files = Files.walk(root)) {
+            List<Path> paths = files.filter(Files::isRegularFile)
+                    .sorted(Comparator.comparing(TieredBlobStore::lastModified))
+                    .toList();
+            for (Path path : paths) {
+                if (path.getFileName().toString().startsWith(".upload")) {
+                    // Leftover from an interrupted write
+                    Files.deleteIfExists(path);
+                    continue;
+                }
+                String key = root.relativize(path).toString().replace('\\', '/');
+                entries.put(key, Files.size(path));
+                cachedBytes += Files.size(path);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to scan storage cache " + root, e);
+        }
+        evict();
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
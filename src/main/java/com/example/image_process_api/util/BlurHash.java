@@ -0,0 +1,106 @@
+package com.example.image_process_api.util;
+
+/**
+ * BlurHash encoder (https://blurha.sh).
+ * Turns a small RGB raster into a ~20-30 character string that clients decode into a
+ * blurred placeholder, so grids can paint before the real image arrives.
+ */
+public final class BlurHash {
+
+    private static final String CHARACTERS =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz#$%*+,-.:;=?@[]^_{|}~";
+
+    private BlurHash() {
+    }
+
+    /**
+     * Encode an image
+     * @param pixels - packed RGB pixels, row-major
+     * @param width - image width
+     * @param height - image height
+     * @param componentsX - horizontal components (1-9)
+     * @param componentsY - vertical components (1-9)
+     * @return BlurHash string
+     */
+    public static String encode(int[] pixels, int width, int height, int componentsX, int componentsY) {
+        double[][] factors = new double[componentsX * componentsY][];
+        for (int j = 0; j < componentsY; j++) {
+            for (int i = 0; i < componentsX; i++) {
+                factors[j * componentsX + i] = basis(pixels, width, height, i, j);
+            }
+        }
+
+        StringBuilder hash = new StringBuilder();
+        encode83(hash, (componentsX - 1) + (componentsY - 1) * 9, 1);
+
+        double maximumValue = 1;
+        if (factors.length > 1) {
+            double actualMaximum = 0;
+            for (int k = 1; k < factors.length; k++) {
+                for (double component : factors[k]) {
+                    actualMaximum = Math.max(actualMaximum, Math.abs(component));
+                }
+            }
+            int quantisedMaximum = (int) Math.max(0, Math.min(82, Math.floor(actualMaximum * 166 - 0.5)));
+            maximumValue = (quantisedMaximum + 1) / 166.0;
+            encode83(hash, quantisedMaximum, 1);
+        } else {
+            encode83(hash, 0, 1);
+        }
+
+        double[] dc = factors[0];
+        encode83(hash, (linearToSrgb(dc[0]) << 16) + (linearToSrgb(dc[1]) << 8) + linearToSrgb(dc[2]), 4);
+        for (int k = 1; k < factors.length; k++) {
+            encode83(hash, encodeAc(factors[k], maximumValue), 2);
+        }
+        return hash.toString();
+    }
+
+    private static double[] basis(int[] pixels, int width, int height, int i, int j) {
+        double r = 0, g = 0, b = 0;
+        double normalisation = (i == 0 && j == 0) ? 1 : 2;
+        for (int y = 0; y < height; y++) {
+            double cosY = Math.cos(Math.PI * j * y / height);
+            for (int x = 0; x < width; x++) {
+                double basis = normalisation * Math.cos(Math.PI * i * x / width) * cosY;
+                int pixel = pixels[y * width + x];
+                r += basis * srgbToLinear((pixel >> 16) & 0xFF);
+                g += basis * srgbToLinear((pixel >> 8) & 0xFF);
+                b += basis * srgbToLinear(pixel & 0xFF);
+            }
+        }
+        double scale = 1.0 / (width * height);
+        return new double[] {r * scale, g * scale, b * scale};
+    }
+
+    private static int encodeAc(double[] value, double maximumValue) {
+        int r = quantise(value[0] / maximumValue);
+        int g = quantise(value[1] / maximumValue);
+        int b = quantise(value[2] / maximumValue);
+        return r * 19 * 19 + g * 19 + b;
+    }
+
+    private static int quantise(double value) {
+        double signedSqrt = Math.copySign(Math.sqrt(Math.abs(value)), value);
+        return (int) Math.max(0, Math.min(18, Math.floor(signedSqrt * 9 + 9.5)));
+    }
+
+    private static double srgbToLinear(int value) {
+        double v = value / 255.0;
+        return v <= 0.04045 ? v / 12.92 : Math.pow((v + 0.055) / 1.055, 2.4);
+    }
+
+    private static int linearToSrgb(double value) {
+        double v = Math.max(0, Math.min(1, value));
+        return v <= 0.0031308
+                ? (int) (v * 12.92 * 255 + 0.5)
+                : (int) ((1.055 * Math.pow(v, 1 / 2.4) - 0.055) * 255 + 0.5);
+    }
+
+    private static void encode83(StringBuilder hash, int value, int length) {
+        for (int i = 1; i <= length; i++) {
+            int digit = (value / (int) Math.pow(83, length - i)) % 83;
+            hash.append(CHARACTERS.charAt(digit));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.image_process_api.util;
+
+/**
+ * Difference hash (dHash), a 64-bit perceptual hash.
+ * The image is reduced to a 9x8 grayscale grid and each bit records whether a cell is
+ * brighter than its right-hand neighbour. Resized or recompressed copies of a picture
+ * keep nearly all bits, so the Hamming distance between hashes measures visual similarity.
+ */
+public final class DHash {
+
+    private static final int GRID_WIDTH = 9;
+    private static final int GRID_HEIGHT = 8;
+
+    private DHash() {
+    }
+
+    /**
+     * Hash an image
+     * @param pixels - packed RGB pixels, row-major
+     * @param width - image width
+     * @param height - image height
+     * @return 64-bit hash
+     */
+    public static long encode(int[] pixels, int width, int height) {
+        double[] luma = new double[GRID_WIDTH * GRID_HEIGHT];
+        for (int gy = 0; gy < GRID_HEIGHT; gy++) {
+            int y0 = gy * height / GRID_HEIGHT;
+            int y1 = Math.max(y0 + 1, (gy + 1) * height / GRID_HEIGHT);
+            for (int gx = 0; gx < GRID_WIDTH; gx++) {
+                int x0 = gx * width / GRID_WIDTH;
+                int x1 = Math.max(x0 + 1, (gx + 1) * width / GRID_WIDTH);
+                luma[gy * GRID_WIDTH + gx] = averageLuma(pixels, width, Math.min(x0, width - 1), Math.min(x1, width),
+                        Math.min(y0, height - 1), Math.min(y1, height));
+            }
+        }
+
+        long hash = 0;
+        for (int gy = 0; gy < GRID_HEIGHT; gy++) {
+            for (int gx = 0; gx < GRID_WIDTH - 1; gx++) {
+                hash <<= 1;
+                if (luma[gy * GRID_WIDTH + gx] > luma[gy * GRID_WIDTH + gx + 1]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Number of differing bits between two hashes
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    private static double averageLuma(int[] pixels, int width, int x0, int x1, int y0, int y1) {
+        double sum = 0;
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                int p = pixels[y * width + x];
+                sum += 0.299 * ((p >> 16) & 0xFF) + 0.587 * ((p >> 8) & 0xFF) + 0.114 * (p & 0xFF);
+            }
+        }
+        return sum / ((x1 - x0) * (y1 - y0));
+    }
+}
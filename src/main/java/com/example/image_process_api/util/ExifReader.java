@@ -0,0 +1,234 @@
+package com.example.image_process_api.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Minimal EXIF reader for JPEG files.
+ * Walks the marker segments in front of the image data only, so it never touches
+ * the compressed pixels, and extracts a small set of commonly used tags. The same
+ * walk answers whether an image carries an ICC profile.
+ */
+public final class ExifReader {
+
+    private static final int TAG_MAKE = 0x010F;
+    private static final int TAG_MODEL = 0x0110;
+    private static final int TAG_ORIENTATION = 0x0112;
+    private static final int TAG_SOFTWARE = 0x0131;
+    private static final int TAG_DATE_TIME = 0x0132;
+    private static final int TAG_EXIF_IFD = 0x8769;
+    private static final int TAG_EXPOSURE_TIME = 0x829A;
+    private static final int TAG_F_NUMBER = 0x829D;
+    private static final int TAG_ISO = 0x8827;
+    private static final int TAG_DATE_TIME_ORIGINAL = 0x9003;
+    private static final int TAG_FOCAL_LENGTH = 0x920A;
+
+    private static final int MARKER_APP1 = 0xE1;
+    private static final int MARKER_APP2 = 0xE2;
+
+    private static final Map<Integer, String> TAG_NAMES = Map.of(
+            TAG_MAKE, "Make",
+            TAG_MODEL, "Model",
+            TAG_ORIENTATION, "Orientation",
+            TAG_SOFTWARE, "Software",
+            TAG_DATE_TIME, "DateTime",
+            TAG_EXPOSURE_TIME, "ExposureTime",
+            TAG_F_NUMBER, "FNumber",
+            TAG_ISO, "ISOSpeedRatings",
+            TAG_DATE_TIME_ORIGINAL, "DateTimeOriginal",
+            TAG_FOCAL_LENGTH, "FocalLength"
+    );
+
+    private ExifReader() {
+    }
+
+    /**
+     * Read key EXIF tags from a JPEG
+     * @param data - encoded image bytes
+     * @return tag name to value; empty if the image is not a JPEG or has no EXIF block
+     */
+    public static Map<String, String> read(byte[] data) {
+        Map<String, String> tags = new LinkedHashMap<>();
+        try {
+            int[] segment = findJpegSegment(data, MARKER_APP1, "Exif\0\0");
+            if (segment != null) {
+                new TiffParser(data, segment[0], segment[1]).parse(tags);
+            }
+        } catch (RuntimeException e) {
+            // Truncated or malformed EXIF: keep whatever was read before the damage
+        }
+        return tags;
+    }
+
+    /**
+     * Check for an embedded ICC profile: APP2 "ICC_PROFILE" segments in JPEG, an iCCP chunk in PNG
+     * @param data - encoded image bytes
+     * @return true if a profile is present; false for other formats
+     */
+    public static boolean hasColorProfile(byte[] data) {
+        if (findJpegSegment(data, MARKER_APP2, "ICC_PROFILE\0") != null) {
+            return true;
+        }
+        if (data.length > 8 && (data[0] & 0xFF) == 0x89 && startsWith(data, 1, "PNG")) {
+            int offset = 8;
+            while (offset + 8 <= data.length) {
+                int length = ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16)
+                        | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+                if (startsWith(data, offset + 4, "iCCP")) {
+                    return true;
+                }
+                // iCCP must come before the image data
+                if (length < 0 || startsWith(data, offset + 4, "IDAT")) {
+                    break;
+                }
+                offset += 12 + length;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find a JPEG metadata segment by marker and payload signature
+     * @return start of the payload after the signature and end of the segment, or null if absent
+     */
+    private static int[] findJpegSegment(byte[] data, int wantedMarker, String signature) {
+        if (data.length < 4 || (data[0] & 0xFF) != 0xFF || (data[1] & 0xFF) != 0xD8) {
+            return null;
+        }
+        int offset = 2;
+        while (offset + 4 <= data.length && (data[offset] & 0xFF) == 0xFF) {
+            int marker = data[offset + 1] & 0xFF;
+            if (marker == 0xFF) {
+                // Fill byte before a marker
+                offset++;
+                continue;
+            }
+            // Start of scan or end of image: the metadata segments are behind us
+            if (marker == 0xDA || marker == 0xD9) {
+                break;
+            }
+            int length = ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+            int payload = offset + 4;
+            if (marker == wantedMarker && length >= 2 + signature.length() && startsWith(data, payload, signature)) {
+                return new int[] {payload + signature.length(), Math.min(data.length, offset + 2 + length)};
+            }
+            offset += 2 + length;
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] data, int offset, String prefix) {
+        byte[] expected = prefix.getBytes(StandardCharsets.ISO_8859_1);
+        if (offset < 0 || offset + expected.length > data.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (data[offset + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads IFD entries from the TIFF structure embedded in an EXIF segment
+     */
+    private static final class TiffParser {
+        private final byte[] data;
+        private final int base;
+        private final int limit;
+        private final boolean littleEndian;
+
+        TiffParser(byte[] data, int base, int limit) {
+            this.data = data;
+            this.base = base;
+            this.limit = limit;
+            this.littleEndian = data[base] == 'I';
+        }
+
+        void parse(Map<String, String> tags) {
+            int exifIfd = readIfd(u32(base + 4), tags);
+            if (exifIfd > 0) {
+                readIfd(exifIfd, tags);
+            }
+        }
+
+        /**
+         * @return offset of the Exif sub-IFD if this IFD points to one, otherwise 0
+         */
+        private int readIfd(int ifdOffset, Map<String, String> tags) {
+            int entries = u16(base + ifdOffset);
+            int exifIfd = 0;
+            for (int i = 0; i < entries; i++) {
+                int entry = base + ifdOffset + 2 + i * 12;
+                int tag = u16(entry);
+                int type = u16(entry + 2);
+                int count = u32(entry + 4);
+                if (tag == TAG_EXIF_IFD) {
+                    exifIfd = u32(entry + 8);
+                    continue;
+                }
+                String name = TAG_NAMES.get(tag);
+                if (name != null) {
+                    String value = value(entry, type, count);
+                    if (value != null && !value.isEmpty()) {
+                        tags.put(name, value);
+                    }
+                }
+            }
+            return exifIfd;
+        }
+
+        private String value(int entry, int type, int count) {
+            int size = switch (type) {
+                case 1, 2, 7 -> 1;
+                case 3 -> 2;
+                case 4, 9 -> 4;
+                case 5, 10 -> 8;
+                default -> 0;
+            };
+            if (size == 0 || count <= 0) {
+                return null;
+            }
+            // Values up to four bytes are stored inline; larger ones live at an offset
+            int position = (long) size * count <= 4 ? entry + 8 : base + u32(entry + 8);
+            return switch (type) {
+                case 2 -> ascii(position, count);
+                case 3 -> String.valueOf(u16(position));
+                case 4, 9 -> String.valueOf(u32(position));
+                case 5, 10 -> u32(position) + "/" + u32(position + 4);
+                default -> null;
+            };
+        }
+
+        private String ascii(int position, int count) {
+            check(position, count);
+            int end = position;
+            while (end < position + count && data[end] != 0) {
+                end++;
+            }
+            return new String(data, position, end - position, StandardCharsets.US_ASCII).trim();
+        }
+
+        private int u16(int position) {
+            check(position, 2);
+            int a = data[position] & 0xFF;
+            int b = data[position + 1] & 0xFF;
+            return littleEndian ? (b << 8) | a : (a << 8) | b;
+        }
+
+        private int u32(int position) {
+            check(position, 4);
+            int a = u16(position);
+            int b = u16(position + 2);
+            return littleEndian ? (b << 16) | a : (a << 16) | b;
+        }
+
+        private void check(int position, int length) {
+            if (position < base || position + length > limit) {
+                throw new IndexOutOfBoundsException("EXIF value outside segment");
+            }
+        }
+    }
+}
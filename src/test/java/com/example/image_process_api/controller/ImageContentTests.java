@@ -0,0 +1,158 @@
+package com.example.image_process_api.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import com.example.image_process_api.entity.Image;
+import com.example.image_process_api.exception.GlobalExceptionHandler;
+import com.example.image_process_api.service.ImageDeliveryService;
+import com.example.image_process_api.service.ImageService;
+import com.example.image_process_api.service.StorageService;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ImageContentTests {
+
+	private static final byte[] DATA = "0123456789".getBytes();
+	private static final LocalDateTime UPLOADED_AT = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+	private final ImageService imageService = mock(ImageService.class);
+	private final StorageService storageService = mock(StorageService.class);
+	private MockMvc mockMvc;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		ImageDeliveryService deliveryService = new ImageDeliveryService();
+		ReflectionTestUtils.setField(deliveryService, "imageService", imageService);
+		ReflectionTestUtils.setField(deliveryService, "storageService", storageService);
+		main controller = new main();
+		ReflectionTestUtils.setField(controller, "imageDeliveryService", deliveryService);
+		mockMvc = MockMvcBuilders.standaloneSetup(controller)
+				.setControllerAdvice(new GlobalExceptionHandler())
+				.build();
+
+		when(imageService.getImageById("1")).thenReturn(new Image("1", "blobs/abc", "photo.jpg", "image/jpeg",
+				UPLOADED_AT, "alice", "abc", null, null));
+		when(storageService.extractKey("blobs/abc")).thenReturn("blobs/abc");
+		when(storageService.size("blobs/abc")).thenReturn((long) DATA.length);
+		when(storageService.transferTo(anyString(), anyLong(), anyLong(), any())).thenAnswer(invocation -> {
+			long offset = invocation.getArgument(1);
+			long length = invocation.getArgument(2);
+			WritableByteChannel target = invocation.getArgument(3);
+			return (long) target.write(ByteBuffer.wrap(DATA, (int) offset, (int) length));
+		});
+	}
+
+	@Test
+	void servesTheWholeObject() throws Exception {
+		mockMvc.perform(get("/images/1/content"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, "\"abc\""))
+				.andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+				.andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 10))
+				.andExpect(content().contentType("image/jpeg"))
+				.andExpect(content().bytes(DATA));
+	}
+
+	@Test
+	void servesASuffixRange() throws Exception {
+		mockMvc.perform(get("/images/1/content").header(HttpHeaders.RANGE, "bytes=-3"))
+				.andExpect(status().isPartialContent())
+				.andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 7-9/10"))
+				.andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 3))
+				.andExpect(content().string("789"));
+	}
+
+	@Test
+	void clampsOpenEndedRanges() throws Exception {
+		mockMvc.perform(get("/images/1/content").header(HttpHeaders.RANGE, "bytes=4-100"))
+				.andExpect(status().isPartialContent())
+				.andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 4-9/10"))
+				.andExpect(content().string("456789"));
+	}
+
+	@Test
+	void rejectsUnsatisfiableRanges() throws Exception {
+		mockMvc.perform(get("/images/1/content").header(HttpHeaders.RANGE, "bytes=20-"))
+				.andExpect(status().isRequestedRangeNotSatisfiable())
+				.andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"));
+		mockMvc.perform(get("/images/1/content").header(HttpHeaders.RANGE, "bytes=10-12"))
+				.andExpect(status().isRequestedRangeNotSatisfiable());
+		mockMvc.perform(get("/images/1/content").header(HttpHeaders.RANGE, "bytes=-0"))
+				.andExpect(status().isRequestedRangeNotSatisfiable());
+		verify(storageService, never()).transferTo(anyString(), anyLong(), anyLong(), any());
+	}
+
+	@Test
+	void answersSeveralRangesWithTheWholeObject() throws Exception {
+		mockMvc.perform(get("/images/1/content").header(HttpHeaders.RANGE, "bytes=0-1,4-5"))
+				.andExpect(status().isOk())
+				.andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+				.andExpect(content().bytes(DATA));
+	}
+
+	@Test
+	void ignoresTheRangeWhenIfRangeIsStale() throws Exception {
+		mockMvc.perform(get("/images/1/content")
+						.header(HttpHeaders.RANGE, "bytes=0-1")
+						.header(HttpHeaders.IF_RANGE, "\"old\""))
+				.andExpect(status().isOk())
+				.andExpect(content().bytes(DATA));
+
+		String yesterday = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+				UPLOADED_AT.minusDays(1).atZone(ZoneId.systemDefault()));
+		mockMvc.perform(get("/images/1/content")
+						.header(HttpHeaders.RANGE, "bytes=0-1")
+						.header(HttpHeaders.IF_RANGE, yesterday))
+				.andExpect(status().isOk())
+				.andExpect(content().bytes(DATA));
+	}
+
+	@Test
+	void honoursTheRangeWhenIfRangeMatches() throws Exception {
+		mockMvc.perform(get("/images/1/content")
+						.header(HttpHeaders.RANGE, "bytes=0-1")
+						.header(HttpHeaders.IF_RANGE, "\"abc\""))
+				.andExpect(status().isPartialContent())
+				.andExpect(content().string("01"));
+
+		// Weak validators never satisfy If-Range
+		mockMvc.perform(get("/images/1/content")
+						.header(HttpHeaders.RANGE, "bytes=0-1")
+						.header(HttpHeaders.IF_RANGE, "W/\"abc\""))
+				.andExpect(status().isOk());
+	}
+
+	@Test
+	void answersCurrentCopiesWithNotModified() throws Exception {
+		mockMvc.perform(get("/images/1/content").header(HttpHeaders.IF_NONE_MATCH, "\"abc\""))
+				.andExpect(status().isNotModified())
+				.andExpect(content().bytes(new byte[0]));
+
+		String uploaded = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+				ZonedDateTime.of(UPLOADED_AT, ZoneId.systemDefault()));
+		mockMvc.perform(get("/images/1/content").header(HttpHeaders.IF_MODIFIED_SINCE, uploaded))
+				.andExpect(status().isNotModified());
+		verify(storageService, never()).transferTo(anyString(), anyLong(), anyLong(), any());
+	}
+}
@@ -0,0 +1,263 @@
+package com.example.image_process_api.service;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import com.example.image_process_api.dto.BulkUploadResult;
+import com.example.image_process_api.entity.Image;
+import com.example.image_process_api.exception.AuthException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BulkIngestionServiceTests {
+
+	private final ImageService imageService = mock(ImageService.class);
+	private final BulkIngestionService service = new BulkIngestionService(4);
+	private final List<BulkUploadResult> results = new CopyOnWriteArrayList<>();
+	private final AtomicInteger ids = new AtomicInteger();
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(service, "imageService", imageService);
+		ReflectionTestUtils.setField(service, "concurrency", 2);
+		ReflectionTestUtils.setField(service, "batchSize", 100);
+		ReflectionTestUtils.setField(service, "maxEntrySize", DataSize.ofBytes(64));
+		ReflectionTestUtils.setField(service, "maxBatchDelay", Duration.ofMillis(50));
+		when(imageService.prepareImage(any(), anyString(), anyString(), isNull())).thenAnswer(invocation ->
+				new Image("id" + ids.incrementAndGet(), "blobs/" + invocation.getArgument(1), invocation.getArgument(1),
+						invocation.getArgument(2), null, null, null, null, null));
+		when(imageService.insertImages(anyList())).thenReturn(Map.of());
+	}
+
+	@AfterEach
+	void tearDown() {
+		service.shutdown();
+	}
+
+	@Test
+	void ingestsImagesAndSkipsEverythingElse() throws IOException {
+		byte[] zip = zip(
+				"photos/", null,
+				"photos/a.jpg", bytes(10),
+				"photos/b.PNG", bytes(10),
+				"notes.txt", bytes(10),
+				"__MACOSX/photos/._a.jpg", bytes(10),
+				"photos/.hidden.jpg", bytes(10),
+				"photos/huge.jpg", bytes(100));
+
+		service.ingest(new ByteArrayInputStream(zip), null, results::add);
+
+		assertEquals(List.of("photos/a.jpg", "photos/b.PNG"), entries("uploaded").stream().sorted().toList());
+		assertEquals(List.of("notes.txt", "photos/huge.jpg"), entries("skipped"));
+		assertEquals("2 uploaded, 0 failed, 2 skipped", summary());
+		verify(imageService).prepareImage(any(), eq("b.PNG"), eq("image/png"), isNull());
+	}
+
+	@Test
+	void readsGzippedTarArchives() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(out))) {
+			for (String name : List.of("a.webp", "b.jpeg")) {
+				TarArchiveEntry entry = new TarArchiveEntry(name);
+				entry.setSize(10);
+				tar.putArchiveEntry(entry);
+				tar.write(bytes(10));
+				tar.closeArchiveEntry();
+			}
+		}
+
+		service.ingest(new ByteArrayInputStream(out.toByteArray()), null, results::add);
+
+		assertEquals(List.of("a.webp", "b.jpeg"), entries("uploaded").stream().sorted().toList());
+		assertEquals("2 uploaded, 0 failed, 0 skipped", summary());
+	}
+
+	@Test
+	void reportsEntriesBeforeTheArchiveEnds() throws Exception {
+		PipedOutputStream client = new PipedOutputStream();
+		PipedInputStream body = new PipedInputStream(client, 64 * 1024);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<?> ingest = executor.submit(() -> {
+				service.ingest(body, null, results::add);
+				return null;
+			});
+			ZipOutputStream zip = new ZipOutputStream(client);
+			zip.putNextEntry(new ZipEntry("first.jpg"));
+			zip.write(bytes(10));
+			zip.closeEntry();
+			// The next local header tells the reader the first entry is complete
+			zip.putNextEntry(new ZipEntry("second.jpg"));
+			zip.flush();
+
+			// The batch is far from full, but the first entry is reported once it has waited max-batch-delay
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			while (entries("uploaded").isEmpty() && System.nanoTime() < deadline) {
+				Thread.sleep(10);
+			}
+			assertEquals(List.of("first.jpg"), entries("uploaded"));
+
+			zip.write(bytes(10));
+			zip.close();
+			ingest.get(10, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(List.of("first.jpg", "second.jpg"), entries("uploaded").stream().sorted().toList());
+		assertEquals("2 uploaded, 0 failed, 0 skipped", summary());
+	}
+
+	@Test
+	void reportsPerEntryFailures() throws IOException {
+		when(imageService.prepareImage(any(), eq("bad.jpg"), anyString(), isNull())).thenThrow(new AuthException("Invalid image"));
+		when(imageService.insertImages(anyList())).thenAnswer(invocation -> {
+			List<Image> images = invocation.getArgument(0);
+			for (int i = 0; i < images.size(); i++) {
+				if (images.get(i).getFileName().equals("duplicate.jpg")) {
+					return Map.of(i, "Duplicate key");
+				}
+			}
+			return Map.of();
+		});
+
+		service.ingest(new ByteArrayInputStream(zip("bad.jpg", bytes(10), "duplicate.jpg", bytes(10), "good.jpg", bytes(10))),
+				null, results::add);
+
+		assertEquals(List.of("good.jpg"), entries("uploaded"));
+		assertEquals(List.of("bad.jpg", "duplicate.jpg"), entries("failed").stream().sorted().toList());
+		assertEquals("1 uploaded, 2 failed, 0 skipped", summary());
+	}
+
+	@Test
+	void truncatedArchivesKeepWhatWasRead() throws IOException {
+		byte[] incompressible = new byte[60];
+		new Random(1).nextBytes(incompressible);
+		byte[] zip = zip("a.jpg", bytes(10), "b.jpg", incompressible);
+		// Cut inside the second entry's data
+		byte[] truncated = Arrays.copyOf(zip, indexOf(zip, "b.jpg") + 40);
+
+		service.ingest(new ByteArrayInputStream(truncated), null, results::add);
+
+		assertEquals(List.of("a.jpg"), entries("uploaded"));
+		BulkUploadResult failure = results.stream().filter(r -> r.getStatus().equals("failed")).findFirst().orElseThrow();
+		assertEquals("b.jpg", failure.getEntry());
+		assertTrue(failure.getMessage().startsWith("Archive could not be read to the end"));
+		assertEquals("1 uploaded, 1 failed, 0 skipped", summary());
+	}
+
+	@Test
+	void stopsReadingWhenTheClientGoesAway() {
+		byte[] zip = zip("notes.txt", bytes(10), "a.jpg", bytes(10), "b.jpg", bytes(10));
+
+		IOException e = assertThrows(IOException.class, () -> service.ingest(new ByteArrayInputStream(zip), null, result -> {
+			throw new UncheckedIOException(new IOException("Broken pipe"));
+		}));
+
+		assertEquals("Broken pipe", e.getMessage());
+		verify(imageService, never()).prepareImage(any(), anyString(), anyString(), any());
+	}
+
+	@Test
+	void storedEntriesAreSavedWhenTheClientGoesAwayMidUpload() throws IOException {
+		List<BulkUploadResult> delivered = new CopyOnWriteArrayList<>();
+
+		IOException e = assertThrows(IOException.class, () -> service.ingest(
+				new ByteArrayInputStream(zip("a.jpg", bytes(10), "b.jpg", bytes(10))), null, result -> {
+					if (result.getStatus().equals("uploaded")) {
+						throw new UncheckedIOException(new IOException("Connection reset"));
+					}
+					delivered.add(result);
+				}));
+
+		assertEquals("Connection reset", e.getMessage());
+		// Nothing is delivered after the failure, but the prepared documents are still written
+		assertTrue(delivered.isEmpty());
+		verify(imageService).insertImages(anyList());
+	}
+
+	@Test
+	void rejectsDataThatIsNotAnArchive() {
+		assertThrows(AuthException.class, () -> service.ingest(
+				new ByteArrayInputStream("plain text, not an archive".getBytes()), null, results::add));
+	}
+
+	private List<String> entries(String status) {
+		return results.stream().filter(r -> r.getStatus().equals(status)).map(BulkUploadResult::getEntry).toList();
+	}
+
+	private String summary() {
+		BulkUploadResult last = results.get(results.size() - 1);
+		assertEquals("summary", last.getStatus());
+		return last.getMessage();
+	}
+
+	/**
+	 * Build a ZIP from name/content pairs; a null content makes a directory entry
+	 */
+	private byte[] zip(Object... namesAndContents) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ZipOutputStream zip = new ZipOutputStream(out)) {
+			for (int i = 0; i < namesAndContents.length; i += 2) {
+				zip.putNextEntry(new ZipEntry((String) namesAndContents[i]));
+				if (namesAndContents[i + 1] != null) {
+					zip.write((byte[]) namesAndContents[i + 1]);
+				}
+				zip.closeEntry();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return out.toByteArray();
+	}
+
+	private byte[] bytes(int size) {
+		byte[] data = new byte[size];
+		Arrays.fill(data, (byte) 'x');
+		return data;
+	}
+
+	private int indexOf(byte[] data, String text) {
+		byte[] needle = text.getBytes();
+		for (int i = 0; i + needle.length <= data.length; i++) {
+			if (Arrays.equals(data, i, i + needle.length, needle, 0, needle.length)) {
+				return i;
+			}
+		}
+		throw new AssertionError(text + " not found");
+	}
+}
@@ -0,0 +1,127 @@
+package com.example.image_process_api.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import com.example.image_process_api.dto.RenderedImage;
+import com.example.image_process_api.entity.Image;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ImageDeliveryServiceTests {
+
+	private static final String CHROME = "image/avif,image/webp,image/apng,image/svg+xml,image/*,*/*;q=0.8";
+
+	private final ImageDeliveryService deliveryService = new ImageDeliveryService();
+	private final ImageService imageService = mock(ImageService.class);
+	private final ImageTransformationService transformationService = mock(ImageTransformationService.class);
+	private final StorageService storageService = mock(StorageService.class);
+	private final TransformScheduler transformScheduler = mock(TransformScheduler.class);
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(deliveryService, "imageService", imageService);
+		ReflectionTestUtils.setField(deliveryService, "imageTransformationService", transformationService);
+		ReflectionTestUtils.setField(deliveryService, "storageService", storageService);
+		ReflectionTestUtils.setField(deliveryService, "transformScheduler", transformScheduler);
+		ReflectionTestUtils.setField(deliveryService, "maxWait", Duration.ofSeconds(10));
+		when(storageService.extractKey(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+		when(storageService.downloadFile("originals/photo.jpg")).thenReturn(new byte[] {1});
+	}
+
+	@Test
+	void highestQualityWins() {
+		assertEquals(ImageFormat.WEBP, deliveryService.negotiate("image/webp;q=1, image/avif;q=0.5", ImageFormat.JPEG));
+		assertEquals(ImageFormat.AVIF, deliveryService.negotiate("image/webp;q=0.5, image/avif", ImageFormat.JPEG));
+		assertEquals(ImageFormat.JPEG, deliveryService.negotiate("image/avif;q=0.2, image/jpeg", ImageFormat.JPEG));
+	}
+
+	@Test
+	void tiesGoToTheServersPreference() {
+		assertEquals(ImageFormat.AVIF, deliveryService.negotiate("image/webp, image/avif", ImageFormat.JPEG));
+		assertEquals(ImageFormat.AVIF, deliveryService.negotiate(CHROME, ImageFormat.JPEG));
+		assertEquals(ImageFormat.WEBP, deliveryService.negotiate("image/webp,*/*", ImageFormat.JPEG));
+	}
+
+	@Test
+	void modernFormatsNeedToBeNamed() {
+		assertEquals(ImageFormat.JPEG, deliveryService.negotiate("*/*", ImageFormat.JPEG));
+		assertEquals(ImageFormat.JPEG, deliveryService.negotiate("image/*", ImageFormat.WEBP));
+		assertEquals(ImageFormat.PNG, deliveryService.negotiate(null, ImageFormat.PNG));
+		assertEquals(ImageFormat.JPEG, deliveryService.negotiate("not a media type", ImageFormat.JPEG));
+	}
+
+	@Test
+	void refusedFormatsAreNotServed() {
+		assertEquals(ImageFormat.JPEG, deliveryService.negotiate("image/avif;q=0, */*", ImageFormat.JPEG));
+		// The most specific range decides, so image/png;q=0 is not rescued by image/*
+		assertEquals(ImageFormat.WEBP, deliveryService.negotiate("image/webp;q=0.1, image/png;q=0, image/*", ImageFormat.PNG));
+	}
+
+	@Test
+	void storedVariantsAreReused() {
+		when(imageService.getImageById("1")).thenReturn(image(Map.of("webp", "variants/1.webp")));
+		when(storageService.downloadFile("variants/1.webp")).thenReturn(new byte[] {7});
+
+		RenderedImage rendered = deliveryService.render("1", "image/webp", "alice");
+
+		assertArrayEquals(new byte[] {7}, rendered.getData());
+		assertEquals("image/webp", rendered.getContentType());
+		verify(transformationService, never()).encodeVariant(any(), any(), any(), any());
+		verify(transformScheduler, never()).charge(anyString(), anyDouble());
+	}
+
+	@Test
+	void concurrentFirstRendersShareOneEncode() throws Exception {
+		when(imageService.getImageById("1")).thenReturn(image(null));
+		CountDownLatch encoding = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		when(transformationService.encodeVariant(any(), any(), eq(ImageFormat.WEBP), anyString())).thenAnswer(invocation -> {
+			encoding.countDown();
+			release.await(10, TimeUnit.SECONDS);
+			return new byte[] {9};
+		});
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<RenderedImage> first = executor.submit(() -> deliveryService.render("1", "image/webp", "alice"));
+			assertTrue(encoding.await(10, TimeUnit.SECONDS));
+			Future<RenderedImage> second = executor.submit(() -> deliveryService.render("1", "image/webp", "bob"));
+			// Give the second render time to find the encode in flight before letting it finish
+			Thread.sleep(200);
+			release.countDown();
+
+			assertArrayEquals(new byte[] {9}, first.get(10, TimeUnit.SECONDS).getData());
+			assertArrayEquals(new byte[] {9}, second.get(10, TimeUnit.SECONDS).getData());
+		} finally {
+			executor.shutdownNow();
+		}
+		verify(transformationService, times(1)).encodeVariant(any(), any(), any(), any());
+		verify(storageService, times(1)).uploadObject(eq("variants/1.webp"), any(), eq("image/webp"));
+		verify(imageService, times(1)).addVariant("1", ImageFormat.WEBP, "variants/1.webp");
+	}
+
+	private Image image(Map<String, String> variants) {
+		return new Image("1", "originals/photo.jpg", "photo.jpg", "image/jpeg", LocalDateTime.now(), "alice",
+				"hash", null, variants);
+	}
+}
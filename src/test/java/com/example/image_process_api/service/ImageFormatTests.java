@@ -0,0 +1,35 @@
+package com.example.image_process_api.service;
+
+import org.junit.jupiter.api.Test;
+import com.example.image_process_api.exception.AuthException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ImageFormatTests {
+
+	@Test
+	void namesAreMatchedLeniently() {
+		assertEquals(ImageFormat.JPEG, ImageFormat.fromName("jpg"));
+		assertEquals(ImageFormat.JPEG, ImageFormat.fromName("jpeg"));
+		assertEquals(ImageFormat.JPEG, ImageFormat.fromName("JPEG"));
+		assertEquals(ImageFormat.PNG, ImageFormat.fromName(".png"));
+		assertEquals(ImageFormat.WEBP, ImageFormat.fromName(" WebP "));
+		assertEquals(ImageFormat.AVIF, ImageFormat.fromName("avif"));
+	}
+
+	@Test
+	void onlyPngIsLossless() {
+		assertEquals(false, ImageFormat.PNG.isLossy());
+		assertEquals(true, ImageFormat.JPEG.isLossy());
+		assertEquals("image/webp", ImageFormat.WEBP.getMimeType());
+	}
+
+	@Test
+	void blankAndUnknownNamesAreClientErrors() {
+		assertThrows(AuthException.class, () -> ImageFormat.fromName(null));
+		assertThrows(AuthException.class, () -> ImageFormat.fromName("  "));
+		AuthException unsupported = assertThrows(AuthException.class, () -> ImageFormat.fromName("gif"));
+		assertEquals("Unsupported image format: gif", unsupported.getMessage());
+	}
+}
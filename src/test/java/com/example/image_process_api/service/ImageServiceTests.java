@@ -0,0 +1,116 @@
+package com.example.image_process_api.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import com.example.image_process_api.dto.SimilarImage;
+import com.example.image_process_api.entity.Image;
+import com.example.image_process_api.entity.ImageMetadata;
+import com.example.image_process_api.repository.ImageRepository;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ImageServiceTests {
+
+	private static final long HASH = 0x0F0F_F0F0_1234_5678L;
+
+	private final Map<String, Image> stored = new HashMap<>();
+	private ImageRepository imageRepository;
+	private SimilarityIndex similarityIndex;
+	private ImageService imageService;
+
+	@BeforeEach
+	void setUp() {
+		imageRepository = mock(ImageRepository.class);
+		when(imageRepository.findById(anyString())).thenAnswer(invocation -> Optional.ofNullable(stored.get(invocation.<String>getArgument(0))));
+		when(imageRepository.findAllById(any())).thenAnswer(invocation -> {
+			Iterable<String> ids = invocation.getArgument(0);
+			List<Image> found = new ArrayList<>();
+			ids.forEach(id -> {
+				if (stored.containsKey(id)) {
+					found.add(stored.get(id));
+				}
+			});
+			return found;
+		});
+		similarityIndex = new SimilarityIndex();
+		imageService = new ImageService();
+		ReflectionTestUtils.setField(imageService, "imageRepository", imageRepository);
+		ReflectionTestUtils.setField(imageService, "similarityIndex", similarityIndex);
+	}
+
+	@Test
+	void findSimilarReturnsTheClosestImagesUpToTheLimit() {
+		store("query", HASH, 100, 100);
+		for (int distance = 1; distance <= 30; distance++) {
+			store("copy-" + distance, HASH ^ ((1L << distance) - 1), 100, 100);
+		}
+
+		List<SimilarImage> similar = imageService.findSimilar("query", 24, 5);
+
+		assertEquals(List.of("copy-1", "copy-2", "copy-3", "copy-4", "copy-5"),
+				similar.stream().map(match -> match.getImage().getId()).toList());
+		assertEquals(List.of(1, 2, 3, 4, 5), similar.stream().map(SimilarImage::getDistance).toList());
+		// Only the first batch of the 24 matches is loaded
+		verify(imageRepository, times(1)).findAllById(any());
+	}
+
+	@Test
+	void findSimilarSkipsImagesDeletedSinceTheyWereIndexed() {
+		store("query", HASH, 100, 100);
+		for (int distance = 1; distance <= 12; distance++) {
+			store("copy-" + distance, HASH ^ ((1L << distance) - 1), 100, 100);
+		}
+		for (int distance = 1; distance <= 10; distance++) {
+			stored.remove("copy-" + distance);
+		}
+
+		List<SimilarImage> similar = imageService.findSimilar("query", 24, 2);
+
+		assertEquals(List.of("copy-11", "copy-12"), similar.stream().map(match -> match.getImage().getId()).toList());
+	}
+
+	@Test
+	void nearDuplicatesMustBeAtLeastAsLargeAsTheUpload() {
+		store("thumbnail", HASH, 160, 120);
+		store("original", HASH ^ 0b11, 1600, 1200);
+
+		Image duplicate = imageService.findNearDuplicate(metadata(HASH, 800, 600), 6);
+		assertEquals("original", duplicate.getId());
+
+		// Nothing stored is as large as this upload, so it is kept
+		assertNull(imageService.findNearDuplicate(metadata(HASH, 3200, 2400), 6));
+		// A taller but narrower image does not count either
+		assertNull(imageService.findNearDuplicate(metadata(HASH, 1600, 1300), 6));
+		assertEquals("thumbnail", imageService.findNearDuplicate(metadata(HASH, 160, 120), 6).getId());
+	}
+
+	@Test
+	void uploadsWithoutDimensionsAreNeverDuplicates() {
+		store("original", HASH, 1600, 1200);
+
+		assertNull(imageService.findNearDuplicate(metadata(HASH, null, null), 6));
+	}
+
+	private void store(String id, long hash, int width, int height) {
+		Image image = new Image(id, null, null, null, null, null, null, metadata(hash, width, height), new HashMap<>());
+		stored.put(id, image);
+		similarityIndex.add(image);
+	}
+
+	private static ImageMetadata metadata(long hash, Integer width, Integer height) {
+		return new ImageMetadata(width, height, 1, "sRGB", false, null, null, hash);
+	}
+}
@@ -0,0 +1,97 @@
+package com.example.image_process_api.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageTransformationServiceTests {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void keepsTheHighestQualityThatFits() throws Exception {
+		Path output = directory.resolve("output.jpg");
+		List<Integer> tried = new ArrayList<>();
+
+		int quality = ImageTransformationService.encodeToTargetSize(output, 6_350, 100, (q, candidate) -> {
+			tried.add(q);
+			writeBytes(candidate, q * 100);
+		});
+
+		assertEquals(63, quality);
+		assertEquals(6_300, Files.size(output));
+		// A binary search over 10..100 needs at most seven encodes
+		assertTrue(tried.size() <= 7, "encodes: " + tried);
+		assertOnlyOutputLeft(output);
+	}
+
+	@Test
+	void anExactFitIsKept() throws Exception {
+		Path output = directory.resolve("output.webp");
+
+		int quality = ImageTransformationService.encodeToTargetSize(output, 5_500, 100,
+				(q, candidate) -> writeBytes(candidate, q * 100));
+
+		assertEquals(55, quality);
+		assertEquals(5_500, Files.size(output));
+		assertOnlyOutputLeft(output);
+	}
+
+	@Test
+	void requestedQualityCapsTheSearch() throws Exception {
+		Path output = directory.resolve("output.jpg");
+
+		int quality = ImageTransformationService.encodeToTargetSize(output, 1_000_000, 40,
+				(q, candidate) -> writeBytes(candidate, q * 100));
+
+		assertEquals(40, quality);
+		assertEquals(4_000, Files.size(output));
+	}
+
+	@Test
+	void unreachableBudgetFallsBackToTheMinimumQuality() throws Exception {
+		Path output = directory.resolve("output.jpg");
+
+		int quality = ImageTransformationService.encodeToTargetSize(output, 10,
+				100, (q, candidate) -> writeBytes(candidate, q * 100));
+
+		assertEquals(10, quality);
+		assertEquals(1_000, Files.size(output));
+		assertOnlyOutputLeft(output);
+	}
+
+	@Test
+	void candidatesAreRemovedWhenTheEncoderFails() {
+		Path output = directory.resolve("output.jpg");
+
+		assertThrows(IOException.class, () -> ImageTransformationService.encodeToTargetSize(output, 5_000, 100,
+				(q, candidate) -> {
+					throw new IOException("convert failed");
+				}));
+
+		try (var files = Files.list(directory)) {
+			assertEquals(0, files.count());
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private void writeBytes(Path file, int size) throws IOException {
+		Files.write(file, new byte[size]);
+	}
+
+	private void assertOnlyOutputLeft(Path output) throws IOException {
+		try (var files = Files.list(directory)) {
+			assertEquals(List.of(output), files.toList());
+		}
+	}
+}
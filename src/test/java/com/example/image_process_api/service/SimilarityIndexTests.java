@@ -0,0 +1,87 @@
+package com.example.image_process_api.service;
+
+import org.junit.jupiter.api.Test;
+import com.example.image_process_api.entity.Image;
+import com.example.image_process_api.entity.ImageMetadata;
+import com.example.image_process_api.util.DHash;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimilarityIndexTests {
+
+	@Test
+	void searchMatchesBruteForceHammingDistance() {
+		Random random = new Random(42);
+		SimilarityIndex index = new SimilarityIndex();
+		List<Long> hashes = new ArrayList<>();
+
+		// Random hashes plus clusters of near copies, and a few exact duplicates
+		for (int i = 0; i < 2000; i++) {
+			long hash;
+			if (i % 4 == 0 || hashes.isEmpty()) {
+				hash = random.nextLong();
+			} else if (i % 50 == 1) {
+				hash = hashes.get(random.nextInt(hashes.size()));
+			} else {
+				hash = flipBits(hashes.get(random.nextInt(hashes.size())), random.nextInt(12), random);
+			}
+			hashes.add(hash);
+			index.add(image("image-" + i, hash));
+		}
+
+		for (int query = 0; query < 200; query++) {
+			long hash = query % 2 == 0
+					? random.nextLong()
+					: flipBits(hashes.get(random.nextInt(hashes.size())), random.nextInt(6), random);
+			for (int maxDistance : new int[] {0, 3, 6, 10, 24}) {
+				List<SimilarityIndex.Match> expected = new ArrayList<>();
+				for (int i = 0; i < hashes.size(); i++) {
+					int distance = DHash.distance(hash, hashes.get(i));
+					if (distance <= maxDistance) {
+						expected.add(new SimilarityIndex.Match("image-" + i, distance));
+					}
+				}
+				List<SimilarityIndex.Match> actual = index.search(hash, maxDistance);
+
+				assertEquals(sorted(expected), sorted(actual));
+				for (int i = 1; i < actual.size(); i++) {
+					assertTrue(actual.get(i - 1).distance() <= actual.get(i).distance());
+				}
+			}
+		}
+	}
+
+	@Test
+	void imagesWithoutHashOrAlreadyIndexedAreSkipped() {
+		SimilarityIndex index = new SimilarityIndex();
+		index.add(image("a", 0xF0F0L));
+		index.add(image("a", 0xF0F0L));
+		index.add(new Image("b", null, null, null, null, null, null, null, new HashMap<>()));
+
+		assertEquals(List.of(new SimilarityIndex.Match("a", 0)), index.search(0xF0F0L, 0));
+	}
+
+	private static long flipBits(long hash, int count, Random random) {
+		for (int i = 0; i < count; i++) {
+			hash ^= 1L << random.nextInt(Long.SIZE);
+		}
+		return hash;
+	}
+
+	private static List<SimilarityIndex.Match> sorted(List<SimilarityIndex.Match> matches) {
+		List<SimilarityIndex.Match> copy = new ArrayList<>(matches);
+		copy.sort(Comparator.comparing(SimilarityIndex.Match::imageId));
+		return copy;
+	}
+
+	private static Image image(String id, long hash) {
+		ImageMetadata metadata = new ImageMetadata(8, 8, 1, "sRGB", false, null, null, hash);
+		return new Image(id, null, null, null, null, null, null, metadata, new HashMap<>());
+	}
+}
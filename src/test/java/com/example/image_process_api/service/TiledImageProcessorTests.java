@@ -0,0 +1,209 @@
+package com.example.image_process_api.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import com.example.image_process_api.service.TiledImageProcessor.ResizeFilter;
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class TiledImageProcessorTests {
+
+	@Test
+	void tiledOutputMatchesSingleThreadedOutput() {
+		// Threshold of 1 pixel forces every operation through the ForkJoin pool
+		TiledImageProcessor tiled = new TiledImageProcessor(4, 1);
+		TiledImageProcessor sequential = new TiledImageProcessor(1, Long.MAX_VALUE);
+		BufferedImage source = randomImage(1200, 900);
+
+		for (ResizeFilter filter : ResizeFilter.values()) {
+			BufferedImage expected = sequential.resize(sequential.toArgb(source), 500, 333, filter);
+			sequential.grayscale(expected);
+			BufferedImage actual = tiled.resize(tiled.toArgb(source), 500, 333, filter);
+			tiled.grayscale(actual);
+
+			assertEquals(500, actual.getWidth());
+			assertEquals(333, actual.getHeight());
+			assertArrayEquals(pixels(expected), pixels(actual));
+		}
+
+		tiled.shutdown();
+		sequential.shutdown();
+	}
+
+	@Test
+	void filtersMatchImageMagickDefinitions() {
+		assertEquals(1.0, ResizeFilter.LANCZOS.weight(0), 1e-9);
+		assertEquals(0.0, ResizeFilter.LANCZOS.weight(1), 1e-9);
+		assertEquals(0.6079, ResizeFilter.LANCZOS.weight(0.5), 1e-4);
+		assertEquals(0.0, ResizeFilter.LANCZOS.weight(3), 1e-9);
+		assertEquals(8.0 / 9, ResizeFilter.MITCHELL.weight(0), 1e-9);
+		assertEquals(1.0 / 18, ResizeFilter.MITCHELL.weight(1), 1e-9);
+		assertEquals(0.0, ResizeFilter.MITCHELL.weight(2), 1e-9);
+
+		// Shrinking stretches the filter over every covered source pixel; weights always sum to one
+		TiledImageProcessor.Contributions contributions = TiledImageProcessor.contributions(ResizeFilter.LANCZOS, 1000, 250);
+		for (double[] weights : contributions.weights()) {
+			assertEquals(1.0, Arrays.stream(weights).sum(), 1e-9);
+		}
+		// Lanczos reaches 3 source pixels either side at full size, so 2 * 3 * 4 at a quarter
+		assertEquals(24, contributions.weights()[100].length);
+	}
+
+	@Test
+	void defaultFilterFollowsImageMagick() {
+		ColorModel opaque = new BufferedImage(1, 1, BufferedImage.TYPE_3BYTE_BGR).getColorModel();
+		ColorModel transparent = new BufferedImage(1, 1, BufferedImage.TYPE_4BYTE_ABGR).getColorModel();
+		ColorModel palette = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_INDEXED).getColorModel();
+
+		assertEquals(ResizeFilter.LANCZOS, ResizeFilter.forResize(opaque, 4000, 3000, 2000, 1500));
+		assertEquals(ResizeFilter.MITCHELL, ResizeFilter.forResize(opaque, 2000, 1500, 4000, 3000));
+		assertEquals(ResizeFilter.MITCHELL, ResizeFilter.forResize(transparent, 4000, 3000, 2000, 1500));
+		assertEquals(ResizeFilter.MITCHELL, ResizeFilter.forResize(palette, 4000, 3000, 2000, 1500));
+	}
+
+	@Test
+	void flatImagesStayFlat() {
+		TiledImageProcessor processor = new TiledImageProcessor(1, Long.MAX_VALUE);
+		BufferedImage source = new BufferedImage(300, 200, BufferedImage.TYPE_INT_ARGB);
+		Arrays.fill(pixels(source), 0xFF3366CC);
+
+		// Lanczos rings around edges, but a flat field has none, so every output pixel keeps the color
+		for (ResizeFilter filter : ResizeFilter.values()) {
+			for (int[] size : new int[][] {{97, 61}, {640, 480}, {300, 50}}) {
+				BufferedImage resized = processor.resize(source, size[0], size[1], filter);
+				for (int p : pixels(resized)) {
+					assertEquals(0xFF3366CC, p);
+				}
+			}
+		}
+		processor.shutdown();
+	}
+
+	/**
+	 * Compares the in-process resize with ImageMagick's own -resize on the same input.
+	 * Needs the convert binary, as the transform path does; skipped where it is not installed.
+	 */
+	@Test
+	void resizeMatchesImageMagick() throws Exception {
+		assumeTrue(imageMagickAvailable(), "ImageMagick convert not installed");
+		TiledImageProcessor processor = new TiledImageProcessor(2, 1);
+		BufferedImage source = scene(1200, 900);
+		Path input = Files.createTempFile("tiled-source", ".png");
+		try {
+			ImageIO.write(source, "png", input.toFile());
+			for (int[] size : new int[][] {{500, 333}, {1800, 1350}}) {
+				Path output = Files.createTempFile("tiled-reference", ".png");
+				try {
+					Process process = new ProcessBuilder("convert", input.toString(),
+							"-resize", size[0] + "x" + size[1] + "!", output.toString()).start();
+					assertEquals(0, process.waitFor());
+					BufferedImage reference = processor.toArgb(ImageIO.read(output.toFile()));
+					BufferedImage actual = processor.resize(processor.toArgb(source), size[0], size[1],
+							ResizeFilter.forResize(source.getColorModel(), 1200, 900, size[0], size[1]));
+
+					// ImageMagick computes in 16-bit and with polynomial sinc approximations, so allow rounding noise
+					double total = 0;
+					int worst = 0;
+					int[] expected = pixels(reference);
+					int[] got = pixels(actual);
+					for (int i = 0; i < got.length; i++) {
+						for (int shift = 0; shift < 24; shift += 8) {
+							int difference = Math.abs(((expected[i] >> shift) & 0xFF) - ((got[i] >> shift) & 0xFF));
+							total += difference;
+							worst = Math.max(worst, difference);
+						}
+					}
+					double mean = total / (got.length * 3.0);
+					assertTrue(mean < 1.0, "mean difference " + mean);
+					assertTrue(worst <= 8, "worst difference " + worst);
+				} finally {
+					Files.deleteIfExists(output);
+				}
+			}
+		} finally {
+			Files.deleteIfExists(input);
+			processor.shutdown();
+		}
+	}
+
+	/**
+	 * Scaling benchmark for a 48 MP resize plus grayscale.
+	 * Run with: ./mvnw test -Dtest=TiledImageProcessorTests -Dbenchmark=true
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void scalingBenchmark() {
+		BufferedImage source = randomImage(8000, 6000);
+		for (int cores : new int[] {1, 2, 4, 8, 16}) {
+			TiledImageProcessor processor = new TiledImageProcessor(cores, 1);
+			// Warm up the JIT before timing
+			processor.grayscale(processor.resize(processor.toArgb(source), 2000, 1500, ResizeFilter.LANCZOS));
+
+			int runs = 5;
+			long start = System.nanoTime();
+			for (int i = 0; i < runs; i++) {
+				BufferedImage image = processor.resize(processor.toArgb(source), 4000, 3000, ResizeFilter.LANCZOS);
+				processor.grayscale(image);
+			}
+			long averageMillis = (System.nanoTime() - start) / runs / 1_000_000;
+			System.out.printf("cores=%d avg=%d ms%n", cores, averageMillis);
+			processor.shutdown();
+		}
+	}
+
+	private static BufferedImage randomImage(int width, int height) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		Random random = new Random(42);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				image.setRGB(x, y, random.nextInt());
+			}
+		}
+		return image;
+	}
+
+	// Smooth gradients with hard-edged shapes, closer to a photo than noise
+	private static BufferedImage scene(int width, int height) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int red = x * 255 / width;
+				int green = y * 255 / height;
+				image.setRGB(x, y, red << 16 | green << 8 | (red + green) / 2);
+			}
+		}
+		Graphics2D graphics = image.createGraphics();
+		graphics.setColor(Color.WHITE);
+		graphics.fillOval(width / 8, height / 6, width / 3, height / 2);
+		graphics.setColor(Color.BLACK);
+		graphics.fillRect(width / 2, height / 3, width / 4, height / 2);
+		graphics.dispose();
+		return image;
+	}
+
+	private static boolean imageMagickAvailable() {
+		try {
+			return new ProcessBuilder("convert", "-version").start().waitFor() == 0;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	private static int[] pixels(BufferedImage image) {
+		return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+	}
+
+}
@@ -0,0 +1,263 @@
+package com.example.image_process_api.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import com.example.image_process_api.dto.FiltersRequest;
+import com.example.image_process_api.dto.ResizeRequest;
+import com.example.image_process_api.dto.TransformationRequest;
+import com.example.image_process_api.entity.Image;
+import com.example.image_process_api.entity.TransformLease;
+import com.example.image_process_api.exception.AuthException;
+import com.example.image_process_api.exception.TransformInProgressException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransformCoalescingServiceTests {
+
+	private static final TransformationRequest GRAYSCALE = new TransformationRequest(
+			null, null, null, "png", new FiltersRequest(true, null), null, null);
+
+	private final Image derived = new Image("derived", "blobs/derived", "transformed.png", "image/png",
+			null, null, null, null, null);
+	private final ImageTransformationService transformationService = mock(ImageTransformationService.class);
+	private final ImageService imageService = mock(ImageService.class);
+	private final List<TransformCoalescingService> services = new ArrayList<>();
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	private MongoServer server;
+	private MongoClient client;
+	private MongoTemplate mongoTemplate;
+
+	@BeforeEach
+	void setUp() {
+		server = new MongoServer(new MemoryBackend());
+		client = MongoClients.create(server.bindAndGetConnectionString());
+		mongoTemplate = new MongoTemplate(client, "test");
+		when(imageService.getImageById("derived")).thenReturn(derived);
+	}
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+		services.forEach(TransformCoalescingService::shutdown);
+		client.close();
+		server.shutdown();
+	}
+
+	@Test
+	void equivalentSpecsShareAKey() {
+		TransformCoalescingService service = node(false, Duration.ofSeconds(5));
+
+		assertEquals(service.canonicalSpec(rotate(-90)), service.canonicalSpec(rotate(270)));
+		assertEquals(service.canonicalSpec(rotate(270)), service.canonicalSpec(rotate(630)));
+		// A full turn is no rotation, and so is an unset one
+		assertEquals(service.canonicalSpec(rotate(null)), service.canonicalSpec(rotate(360)));
+		assertEquals(service.canonicalSpec(rotate(0)), service.canonicalSpec(rotate(-720)));
+		assertNotEquals(service.canonicalSpec(rotate(90)), service.canonicalSpec(rotate(-90)));
+
+		assertEquals("format=jpg;", service.canonicalSpec(new TransformationRequest(null, null, null, null, null, null, null)));
+		assertEquals("format=jpg;", service.canonicalSpec(new TransformationRequest(null, null, null, "JPEG", null, null, null)));
+		// Filters switched off are the same as no filters at all
+		assertEquals("format=png;", service.canonicalSpec(
+				new TransformationRequest(null, null, null, "png", new FiltersRequest(false, null), null, null)));
+		assertEquals("grayscale;sepia;format=png;", service.canonicalSpec(
+				new TransformationRequest(null, null, null, ".png", new FiltersRequest(true, true), null, null)));
+		// Incomplete resizes are ignored by the transform, so they do not change the key either
+		assertEquals("format=jpg;", service.canonicalSpec(
+				new TransformationRequest(new ResizeRequest(100, null), null, null, "jpg", null, null, null)));
+	}
+
+	@Test
+	void concurrentRequestsOnOneNodeShareTheLeader() throws Exception {
+		TransformCoalescingService service = node(false, Duration.ofSeconds(10));
+		CountDownLatch release = blockTransforms();
+
+		Future<Image> leader = executor.submit(() -> service.transform("1", GRAYSCALE, "alice"));
+		awaitInFlight(service);
+		Future<Image> follower = executor.submit(() -> service.transform("1", GRAYSCALE, "bob"));
+		Thread.sleep(100);
+		release.countDown();
+
+		assertSame(derived, leader.get(10, TimeUnit.SECONDS));
+		assertSame(derived, follower.get(10, TimeUnit.SECONDS));
+		verify(transformationService, times(1)).applyTransformations(anyString(), any(), anyString());
+	}
+
+	@Test
+	void followersStopWaitingAfterMaxWait() throws Exception {
+		TransformCoalescingService service = node(false, Duration.ofMillis(100));
+		CountDownLatch release = blockTransforms();
+
+		Future<Image> leader = executor.submit(() -> service.transform("1", GRAYSCALE, "alice"));
+		awaitInFlight(service);
+
+		TransformInProgressException e = assertThrows(TransformInProgressException.class,
+				() -> service.transform("1", GRAYSCALE, "bob"));
+		assertTrue(e.getRetryAfterSeconds() > 0);
+		release.countDown();
+		assertSame(derived, leader.get(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void bothModesReuseARecordedResult() {
+		when(transformationService.applyTransformations(eq("1"), any(), anyString())).thenReturn(derived);
+
+		for (boolean clusterEnabled : new boolean[] {false, true}) {
+			mongoTemplate.dropCollection(TransformLease.class);
+			TransformCoalescingService service = node(clusterEnabled, Duration.ofSeconds(5));
+
+			assertSame(derived, service.transform("1", GRAYSCALE, "alice"));
+			assertSame(derived, service.transform("1", GRAYSCALE, "bob"));
+
+			TransformLease lease = mongoTemplate.findById("1:" + service.canonicalSpec(GRAYSCALE), TransformLease.class);
+			assertEquals("derived", lease.getResultImageId());
+			assertNull(lease.getExpiresAt());
+			assertTrue(lease.getCompletedAt() != null);
+		}
+		verify(transformationService, times(2)).applyTransformations(eq("1"), any(), anyString());
+	}
+
+	@Test
+	void deletedResultsAreComputedAgain() {
+		when(transformationService.applyTransformations(eq("1"), any(), anyString())).thenReturn(derived);
+		TransformCoalescingService service = node(false, Duration.ofSeconds(5));
+		service.transform("1", GRAYSCALE, "alice");
+
+		when(imageService.getImageById("derived")).thenThrow(new AuthException("Image not found"));
+		when(transformationService.applyTransformations(eq("1"), any(), anyString())).thenReturn(
+				new Image("recomputed", null, null, null, null, null, null, null, null));
+
+		assertEquals("recomputed", service.transform("1", GRAYSCALE, "alice").getId());
+	}
+
+	@Test
+	void anotherNodeWaitsForTheLeaseHolder() throws Exception {
+		TransformCoalescingService leaderNode = node(true, Duration.ofSeconds(10));
+		TransformCoalescingService followerNode = node(true, Duration.ofSeconds(10));
+		CountDownLatch release = blockTransforms();
+
+		Future<Image> leader = executor.submit(() -> leaderNode.transform("1", GRAYSCALE, "alice"));
+		awaitLease("1:" + leaderNode.canonicalSpec(GRAYSCALE));
+		Future<Image> follower = executor.submit(() -> followerNode.transform("1", GRAYSCALE, "bob"));
+		Thread.sleep(200);
+		release.countDown();
+
+		assertSame(derived, leader.get(10, TimeUnit.SECONDS));
+		assertSame(derived, follower.get(10, TimeUnit.SECONDS));
+		verify(transformationService, times(1)).applyTransformations(anyString(), any(), anyString());
+	}
+
+	@Test
+	void anotherNodeGivesUpAfterMaxWait() throws Exception {
+		TransformCoalescingService leaderNode = node(true, Duration.ofSeconds(10));
+		TransformCoalescingService followerNode = node(true, Duration.ofMillis(200));
+		CountDownLatch release = blockTransforms();
+
+		Future<Image> leader = executor.submit(() -> leaderNode.transform("1", GRAYSCALE, "alice"));
+		awaitLease("1:" + leaderNode.canonicalSpec(GRAYSCALE));
+
+		assertThrows(TransformInProgressException.class, () -> followerNode.transform("1", GRAYSCALE, "bob"));
+		release.countDown();
+		assertSame(derived, leader.get(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void expiredLeasesAreTakenOver() {
+		when(transformationService.applyTransformations(eq("1"), any(), anyString())).thenReturn(derived);
+		TransformCoalescingService service = node(true, Duration.ofSeconds(5));
+		String key = "1:" + service.canonicalSpec(GRAYSCALE);
+		mongoTemplate.insert(new TransformLease(key, "crashed-node", Instant.now().minusSeconds(1), null, null));
+
+		assertSame(derived, service.transform("1", GRAYSCALE, "alice"));
+		assertEquals("derived", mongoTemplate.findById(key, TransformLease.class).getResultImageId());
+	}
+
+	@Test
+	void leasesExpireThroughTtlIndexes() {
+		MongoMappingContext mappingContext = (MongoMappingContext) mongoTemplate.getConverter().getMappingContext();
+		Map<String, Long> ttlByField = new HashMap<>();
+		for (IndexDefinition definition : new MongoPersistentEntityIndexResolver(mappingContext).resolveIndexFor(TransformLease.class)) {
+			Object expireAfter = definition.getIndexOptions().get("expireAfterSeconds");
+			if (expireAfter != null) {
+				ttlByField.put(definition.getIndexKeys().keySet().iterator().next(), ((Number) expireAfter).longValue());
+			}
+		}
+
+		assertEquals(Map.of("completedAt", Duration.ofDays(1).toSeconds(), "expiresAt", 0L), ttlByField);
+	}
+
+	private TransformCoalescingService node(boolean clusterEnabled, Duration maxWait) {
+		TransformCoalescingService service = new TransformCoalescingService();
+		ReflectionTestUtils.setField(service, "imageTransformationService", transformationService);
+		ReflectionTestUtils.setField(service, "imageService", imageService);
+		ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+		ReflectionTestUtils.setField(service, "clusterEnabled", clusterEnabled);
+		ReflectionTestUtils.setField(service, "leaseDuration", Duration.ofSeconds(60));
+		ReflectionTestUtils.setField(service, "pollInterval", Duration.ofMillis(10));
+		ReflectionTestUtils.setField(service, "maxPollInterval", Duration.ofMillis(50));
+		ReflectionTestUtils.setField(service, "maxWait", maxWait);
+		services.add(service);
+		return service;
+	}
+
+	private CountDownLatch blockTransforms() {
+		CountDownLatch release = new CountDownLatch(1);
+		when(transformationService.applyTransformations(eq("1"), any(), anyString())).thenAnswer(invocation -> {
+			release.await(10, TimeUnit.SECONDS);
+			return derived;
+		});
+		return release;
+	}
+
+	private TransformationRequest rotate(Integer degrees) {
+		return new TransformationRequest(null, null, degrees, "jpg", null, null, null);
+	}
+
+	private void awaitInFlight(TransformCoalescingService service) throws InterruptedException {
+		Map<?, ?> inFlight = (Map<?, ?>) ReflectionTestUtils.getField(service, "inFlight");
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (inFlight.isEmpty() && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+	}
+
+	private void awaitLease(String key) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (mongoTemplate.findById(key, TransformLease.class) == null && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+	}
+}
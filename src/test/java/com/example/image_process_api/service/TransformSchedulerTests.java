@@ -0,0 +1,179 @@
+package com.example.image_process_api.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import com.example.image_process_api.exception.TooManyRequestsException;
+import com.example.image_process_api.exception.TransformInProgressException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransformSchedulerTests {
+
+	@Test
+	void smallRequestOvertakesAnotherUsersBacklog() throws Exception {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		TransformScheduler scheduler = new TransformScheduler(registry, 1, 1000, 1000, Duration.ofSeconds(30));
+		List<String> order = new CopyOnWriteArrayList<>();
+
+		// Occupy the only slot, then queue a backlog of heavy work followed by one small request
+		TransformScheduler.Permit running = scheduler.acquire("bulk", 50);
+		CountDownLatch done = new CountDownLatch(4);
+		for (int i = 0; i < 3; i++) {
+			startWaiter(scheduler, "bulk", 50, order, done);
+			awaitQueueDepth(registry, "bulk", i + 1);
+		}
+		startWaiter(scheduler, "interactive", 1, order, done);
+		awaitQueueDepth(registry, "interactive", 1);
+
+		running.close();
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals(List.of("interactive", "bulk", "bulk", "bulk"), order);
+	}
+
+	@Test
+	void rejectsRequestsOnceTheBucketIsEmpty() {
+		TransformScheduler scheduler = new TransformScheduler(new SimpleMeterRegistry(), 1, 10, 0.001, Duration.ofSeconds(30));
+		scheduler.charge("user", 6);
+
+		TooManyRequestsException e = assertThrows(TooManyRequestsException.class, () -> scheduler.charge("user", 6));
+		assertTrue(e.getRetryAfterSeconds() > 0);
+		// Buckets are per user
+		scheduler.charge("other", 6);
+	}
+
+	@Test
+	void anonymousClientsShareOneMetricTag() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		TransformScheduler scheduler = new TransformScheduler(registry, 1, 10, 1, Duration.ofSeconds(30));
+		scheduler.charge("ip:10.0.0.1", 1);
+		scheduler.charge("ip:10.0.0.2", 1);
+		scheduler.charge("alice", 1);
+
+		Set<String> tags = registry.find("transform.scheduler.wait").timers().stream()
+				.map(timer -> timer.getId().getTag("user"))
+				.collect(Collectors.toSet());
+		assertEquals(Set.of(TransformScheduler.ANONYMOUS, "alice"), tags);
+	}
+
+	@Test
+	void idleUsersAreEvictedWithTheirMeters() throws Exception {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		TransformScheduler scheduler = new TransformScheduler(registry, 1, 10, 1000, Duration.ofSeconds(30));
+		scheduler.charge("alice", 5);
+		scheduler.acquire("alice", 5).close();
+		scheduler.charge("ip:10.0.0.1", 5);
+
+		// Let the buckets refill
+		Thread.sleep(50);
+		scheduler.evictIdleUsers();
+
+		assertNull(registry.find("transform.scheduler.rejected").tag("user", "alice").counter());
+		// The shared anonymous meters stay
+		assertNotNull(registry.find("transform.scheduler.rejected").tag("user", TransformScheduler.ANONYMOUS).counter());
+
+		// A returning user starts over with fresh meters
+		scheduler.charge("alice", 5);
+		assertNotNull(registry.find("transform.scheduler.rejected").tag("user", "alice").counter());
+	}
+
+	@Test
+	void usersWithAnEmptyingBucketAreKept() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		TransformScheduler scheduler = new TransformScheduler(registry, 1, 10, 0.001, Duration.ofSeconds(30));
+		scheduler.charge("bob", 6);
+
+		scheduler.evictIdleUsers();
+
+		assertNotNull(registry.find("transform.scheduler.rejected").tag("user", "bob").counter());
+		assertThrows(TooManyRequestsException.class, () -> scheduler.charge("bob", 6));
+	}
+
+	@Test
+	void requestsGiveUpAfterTheMaximumQueueWait() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		TransformScheduler scheduler = new TransformScheduler(registry, 1, 1000, 1000, Duration.ofMillis(100));
+		TransformScheduler.Permit running = scheduler.acquire("bulk", 50);
+
+		long started = System.nanoTime();
+		TransformInProgressException e = assertThrows(TransformInProgressException.class, () -> scheduler.acquire("late", 1));
+		assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(100));
+		assertEquals(1, e.getRetryAfterSeconds());
+		assertEquals(0, registry.find("transform.scheduler.queue.depth").tag("user", "late").gauge().value());
+		assertEquals(1, registry.find("transform.scheduler.rejected").tag("user", "late").counter().count());
+
+		// The abandoned waiter took no slot, so the next request runs as soon as the first one finishes
+		running.close();
+		scheduler.acquire("late", 1).close();
+		assertEquals(0, registry.find("transform.scheduler.running").gauge().value());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void chargeRetriesWhenItsEntryIsEvictedWhileWaitingForTheLock() throws Exception {
+		TransformScheduler scheduler = new TransformScheduler(new SimpleMeterRegistry(), 1, 10, 0.001, Duration.ofSeconds(30));
+		scheduler.charge("carol", 10);
+		Map<String, Object> users = (Map<String, Object>) ReflectionTestUtils.getField(scheduler, "users");
+		Object emptied = users.get("carol");
+
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread charging = new Thread(() -> {
+			try {
+				scheduler.charge("carol", 10);
+			} catch (Throwable t) {
+				failure.set(t);
+			}
+		});
+		synchronized (emptied) {
+			charging.start();
+			while (charging.getState() != Thread.State.BLOCKED) {
+				Thread.sleep(1);
+			}
+			// What evictIdleUsers does, landing between the charge's lookup and its lock
+			ReflectionTestUtils.setField(emptied, "retired", true);
+			users.remove("carol");
+		}
+		charging.join(10_000);
+
+		// The charge moved on to a fresh entry with a full bucket instead of the retired, empty one
+		assertNull(failure.get());
+		assertTrue(users.get("carol") != emptied);
+	}
+
+	private static void startWaiter(TransformScheduler scheduler, String user, double cost,
+									List<String> order, CountDownLatch done) {
+		Thread thread = new Thread(() -> {
+			try (TransformScheduler.Permit permit = scheduler.acquire(user, cost)) {
+				order.add(user);
+			}
+			done.countDown();
+		});
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private static void awaitQueueDepth(SimpleMeterRegistry registry, String user, int depth) throws InterruptedException {
+		for (int i = 0; i < 1000; i++) {
+			var gauge = registry.find("transform.scheduler.queue.depth").tag("user", user).gauge();
+			if (gauge != null && gauge.value() == depth) {
+				return;
+			}
+			Thread.sleep(5);
+		}
+		throw new AssertionError("Queue depth for " + user + " never reached " + depth);
+	}
+
+}
@@ -0,0 +1,292 @@
+package com.example.image_process_api.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import com.example.image_process_api.dto.TransformationRequest;
+import com.example.image_process_api.entity.Image;
+import com.example.image_process_api.entity.TransformJob;
+import com.example.image_process_api.entity.TransformJobStatus;
+import com.example.image_process_api.exception.AuthException;
+import com.example.image_process_api.exception.BlobNotFoundException;
+import com.example.image_process_api.repository.TransformJobRepository;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs two workers against one in-process MongoDB, the way separate worker nodes share the queue
+ */
+class TransformWorkerTests {
+
+	private static final TransformationRequest REQUEST = new TransformationRequest(null, null, 90, "jpg", null, null, null);
+
+	private final List<TransformWorker> workers = new ArrayList<>();
+	private MongoServer server;
+	private MongoClient client;
+	private MongoTemplate mongoTemplate;
+
+	@BeforeEach
+	void setUp() {
+		server = new MongoServer(new MemoryBackend());
+		client = MongoClients.create(server.bindAndGetConnectionString());
+		mongoTemplate = new MongoTemplate(client, "test");
+	}
+
+	@AfterEach
+	void tearDown() {
+		workers.forEach(TransformWorker::shutdown);
+		client.close();
+		server.shutdown();
+	}
+
+	@Test
+	void eachJobIsClaimedByOneWorkerOldestFirst() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		TransformWorker first = worker(blocking(release, "a"), Duration.ofSeconds(60));
+		TransformWorker second = worker(blocking(release, "b"), Duration.ofSeconds(60));
+		String oldest = insertJob(Instant.now().minusSeconds(20));
+		String middle = insertJob(Instant.now().minusSeconds(10));
+		String newest = insertJob(Instant.now());
+
+		first.poll();
+		second.poll();
+
+		TransformJob firstJob = job(oldest);
+		TransformJob secondJob = job(middle);
+		assertEquals(TransformJobStatus.RUNNING, firstJob.getStatus());
+		assertEquals(TransformJobStatus.RUNNING, secondJob.getStatus());
+		assertNotEquals(firstJob.getOwner(), secondJob.getOwner());
+		// Both workers are full, so the newest job waits
+		assertEquals(TransformJobStatus.PENDING, job(newest).getStatus());
+
+		release.countDown();
+		assertEquals("a", await(oldest, job -> job.getStatus() == TransformJobStatus.COMPLETED).getResultImageId());
+		assertEquals("b", await(middle, job -> job.getStatus() == TransformJobStatus.COMPLETED).getResultImageId());
+		assertNull(job(oldest).getLeaseExpiresAt());
+	}
+
+	@Test
+	void expiredLeasesAreReclaimedAndOnlyTheOwnerFinishes() throws Exception {
+		CountDownLatch releaseStalled = new CountDownLatch(1);
+		CountDownLatch releaseTakeover = new CountDownLatch(1);
+		TransformWorker stalled = worker(blocking(releaseStalled, "stale"), Duration.ofMillis(200));
+		TransformWorker takeover = worker(blocking(releaseTakeover, "fresh"), Duration.ofSeconds(60));
+		String id = insertJob(Instant.now());
+
+		stalled.poll();
+		String stalledOwner = job(id).getOwner();
+		// Without heartbeats the lease runs out, and the job becomes claimable again
+		Thread.sleep(300);
+		takeover.poll();
+		TransformJob reclaimed = job(id);
+		assertNotEquals(stalledOwner, reclaimed.getOwner());
+		assertEquals(2, reclaimed.getAttempts());
+
+		// The first worker finishing late must not overwrite the new owner's run
+		releaseStalled.countDown();
+		Thread.sleep(200);
+		assertEquals(TransformJobStatus.RUNNING, job(id).getStatus());
+		assertEquals(reclaimed.getOwner(), job(id).getOwner());
+
+		releaseTakeover.countDown();
+		assertEquals("fresh", await(id, job -> job.getStatus() == TransformJobStatus.COMPLETED).getResultImageId());
+	}
+
+	@Test
+	void heartbeatsKeepTheLease() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		TransformWorker busy = worker(blocking(release, "a"), Duration.ofMillis(300));
+		TransformWorker idle = worker(blocking(release, "b"), Duration.ofSeconds(60));
+		String id = insertJob(Instant.now());
+
+		busy.poll();
+		for (int i = 0; i < 5; i++) {
+			Thread.sleep(100);
+			busy.heartbeat();
+		}
+		idle.poll();
+
+		assertEquals(1, job(id).getAttempts());
+		release.countDown();
+		assertEquals("a", await(id, job -> job.getStatus() == TransformJobStatus.COMPLETED).getResultImageId());
+	}
+
+	@Test
+	void transientFailuresAreRetriedUpToMaxAttempts() throws Exception {
+		TransformCoalescingService failing = mock(TransformCoalescingService.class);
+		when(failing.transform(anyString(), any(), anyString())).thenThrow(new RuntimeException("ImageMagick crashed"));
+		TransformWorker worker = worker(failing, Duration.ofSeconds(60));
+		String id = insertJob(Instant.now());
+
+		for (int attempt = 1; attempt < 3; attempt++) {
+			worker.poll();
+			int expectedAttempts = attempt;
+			TransformJob job = await(id, j -> j.getStatus() == TransformJobStatus.PENDING && j.getAttempts() == expectedAttempts);
+			assertEquals("ImageMagick crashed", job.getError());
+			assertNull(job.getOwner());
+		}
+		worker.poll();
+
+		TransformJob job = await(id, j -> j.getStatus() == TransformJobStatus.FAILED);
+		assertEquals(3, job.getAttempts());
+		verify(failing, times(3)).transform(anyString(), any(), anyString());
+	}
+
+	@Test
+	void missingSourcesAndInvalidRequestsFailAtOnce() throws Exception {
+		TransformCoalescingService service = mock(TransformCoalescingService.class);
+		when(service.transform(anyString(), any(), anyString()))
+				.thenThrow(new BlobNotFoundException("Blob not found: blobs/abc"))
+				.thenThrow(new AuthException("Unsupported image format: gif"));
+		TransformWorker worker = worker(service, Duration.ofSeconds(60));
+
+		String missingSource = insertJob(Instant.now().minusSeconds(1));
+		worker.poll();
+		TransformJob failed = await(missingSource, job -> job.getStatus() == TransformJobStatus.FAILED);
+		assertEquals(1, failed.getAttempts());
+		assertTrue(failed.getError().contains("blobs/abc"));
+
+		String invalid = insertJob(Instant.now());
+		worker.poll();
+		assertEquals(1, await(invalid, job -> job.getStatus() == TransformJobStatus.FAILED).getAttempts());
+	}
+
+	@Test
+	void jobsWhoseLastWorkerDiedAreFailed() {
+		TransformCoalescingService service = mock(TransformCoalescingService.class);
+		TransformWorker worker = worker(service, Duration.ofSeconds(60));
+		Instant now = Instant.now();
+		TransformJob exhausted = mongoTemplate.insert(new TransformJob(null, "image", REQUEST, "alice",
+				TransformJobStatus.RUNNING, "dead-worker", now.minusSeconds(1), 3, null, null, now, now));
+		TransformJob alive = mongoTemplate.insert(new TransformJob(null, "image", REQUEST, "alice",
+				TransformJobStatus.RUNNING, "other-worker", now.plusSeconds(60), 3, null, null, now, now));
+
+		worker.poll();
+
+		TransformJob failed = job(exhausted.getId());
+		assertEquals(TransformJobStatus.FAILED, failed.getStatus());
+		assertEquals("Lease expired after 3 attempts", failed.getError());
+		assertEquals(TransformJobStatus.RUNNING, job(alive.getId()).getStatus());
+		verify(service, never()).transform(anyString(), any(), anyString());
+	}
+
+	@Test
+	void submitAndAwaitReturnsTheJobWhileItIsStillQueued() throws Exception {
+		TransformJobService jobService = jobService(Duration.ofMillis(100));
+
+		TransformJob pending = jobService.submitAndAwait("image", REQUEST, "alice");
+
+		assertEquals(TransformJobStatus.PENDING, pending.getStatus());
+		assertTrue(pending.getId() != null);
+
+		TransformWorker worker = worker(blocking(new CountDownLatch(0), "done"), Duration.ofSeconds(60));
+		worker.poll();
+		assertEquals("done", await(pending.getId(), job -> job.getStatus() == TransformJobStatus.COMPLETED).getResultImageId());
+	}
+
+	@Test
+	void submitAndAwaitReturnsFinishedJobs() {
+		TransformJobService jobService = jobService(Duration.ofSeconds(10));
+		TransformWorker worker = worker(blocking(new CountDownLatch(0), "done"), Duration.ofSeconds(60));
+		Thread poller = new Thread(() -> {
+			while (!Thread.currentThread().isInterrupted()) {
+				worker.poll();
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		});
+		poller.start();
+		try {
+			TransformJob job = jobService.submitAndAwait("image", REQUEST, "alice");
+			assertEquals(TransformJobStatus.COMPLETED, job.getStatus());
+			assertEquals("done", job.getResultImageId());
+		} finally {
+			poller.interrupt();
+		}
+	}
+
+	private TransformWorker worker(TransformCoalescingService coalescingService, Duration leaseDuration) {
+		TransformWorker worker = new TransformWorker(1);
+		ReflectionTestUtils.setField(worker, "mongoTemplate", mongoTemplate);
+		ReflectionTestUtils.setField(worker, "transformCoalescingService", coalescingService);
+		ReflectionTestUtils.setField(worker, "leaseDuration", leaseDuration);
+		ReflectionTestUtils.setField(worker, "maxAttempts", 3);
+		workers.add(worker);
+		return worker;
+	}
+
+	private TransformJobService jobService(Duration awaitTimeout) {
+		ImageService imageService = mock(ImageService.class);
+		when(imageService.getImageById("image")).thenReturn(new Image("image", null, null, null, null, null, null, null, null));
+		TransformCoalescingService coalescingService = mock(TransformCoalescingService.class);
+		TransformJobService jobService = new TransformJobService();
+		ReflectionTestUtils.setField(jobService, "transformJobRepository",
+				new MongoRepositoryFactory(mongoTemplate).getRepository(TransformJobRepository.class));
+		ReflectionTestUtils.setField(jobService, "transformCoalescingService", coalescingService);
+		ReflectionTestUtils.setField(jobService, "imageService", imageService);
+		ReflectionTestUtils.setField(jobService, "transformScheduler", mock(TransformScheduler.class));
+		ReflectionTestUtils.setField(jobService, "queueEnabled", true);
+		ReflectionTestUtils.setField(jobService, "awaitTimeout", awaitTimeout);
+		ReflectionTestUtils.setField(jobService, "pollInterval", Duration.ofMillis(20));
+		return jobService;
+	}
+
+	/**
+	 * A coalescing service whose transforms finish once the latch opens, returning an image with the given id
+	 */
+	private TransformCoalescingService blocking(CountDownLatch release, String resultId) {
+		TransformCoalescingService service = mock(TransformCoalescingService.class);
+		when(service.transform(anyString(), any(), anyString())).thenAnswer(invocation -> {
+			release.await(10, TimeUnit.SECONDS);
+			return new Image(resultId, null, null, null, null, null, null, null, null);
+		});
+		return service;
+	}
+
+	private String insertJob(Instant createdAt) {
+		return mongoTemplate.insert(new TransformJob(null, "image", REQUEST, "alice", TransformJobStatus.PENDING,
+				null, null, 0, null, null, createdAt, createdAt)).getId();
+	}
+
+	private TransformJob job(String id) {
+		return mongoTemplate.findById(id, TransformJob.class);
+	}
+
+	private TransformJob await(String id, Predicate<TransformJob> condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		TransformJob job = job(id);
+		while (!condition.test(job) && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+			job = job(id);
+		}
+		assertTrue(condition.test(job), "job " + id + " ended as " + job.getStatus());
+		return job;
+	}
+}
@@ -0,0 +1,66 @@
+package com.example.image_process_api.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import com.example.image_process_api.exception.BlobNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocalFileSystemBlobStoreTests {
+
+	@TempDir
+	Path root;
+
+	@Test
+	void rejectsKeysOutsideTheRoot() {
+		LocalFileSystemBlobStore store = new LocalFileSystemBlobStore(root);
+
+		for (String key : new String[] {"../outside", "blobs/../../outside", "/etc/passwd", "", ".", "blobs/.."}) {
+			assertThrows(IllegalArgumentException.class, () -> store.resolve(key), key);
+		}
+		assertThrows(IllegalArgumentException.class, () -> store.put("../outside", new byte[] {1}, null));
+		assertThrows(IllegalArgumentException.class, () -> store.openStream("../outside", 0, -1));
+	}
+
+	@Test
+	void resolvesKeysBelowTheRoot() {
+		LocalFileSystemBlobStore store = new LocalFileSystemBlobStore(root);
+
+		assertEquals(root.toAbsolutePath().normalize().resolve("blobs/abc"), store.resolve("blobs/abc"));
+		assertEquals(root.toAbsolutePath().normalize().resolve("blobs/abc"), store.resolve("blobs/x/../abc"));
+	}
+
+	@Test
+	void storesAndReadsObjects() throws IOException {
+		LocalFileSystemBlobStore store = new LocalFileSystemBlobStore(root);
+		store.put("blobs/abc", "0123456789".getBytes(), "text/plain");
+
+		assertArrayEquals("0123456789".getBytes(), store.getBytes("blobs/abc"));
+		assertEquals(10, store.size("blobs/abc"));
+		try (InputStream input = store.openStream("blobs/abc", 2, 3)) {
+			assertEquals("234", new String(input.readAllBytes()));
+		}
+		assertTrue(Files.isRegularFile(store.localFile("blobs/abc")));
+		// No temp files are left behind by the atomic write
+		try (var files = Files.list(root.resolve("blobs"))) {
+			assertEquals(1, files.count());
+		}
+	}
+
+	@Test
+	void missingObjectsAreReportedAsNotFound() {
+		LocalFileSystemBlobStore store = new LocalFileSystemBlobStore(root);
+
+		assertThrows(BlobNotFoundException.class, () -> store.openStream("blobs/missing", 0, -1));
+		assertThrows(BlobNotFoundException.class, () -> store.size("blobs/missing"));
+		assertNull(store.localFile("blobs/missing"));
+	}
+}
@@ -0,0 +1,149 @@
+package com.example.image_process_api.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TieredBlobStoreTests {
+
+	@TempDir
+	Path root;
+
+	@Test
+	void evictsLeastRecentlyUsedObjectsOverTheByteBudget() {
+		LocalFileSystemBlobStore cache = new LocalFileSystemBlobStore(root);
+		InMemoryBlobStore origin = new InMemoryBlobStore();
+		TieredBlobStore store = new TieredBlobStore(cache, origin, 10);
+
+		store.put("blobs/a", bytes(4, 'a'), null);
+		store.put("blobs/b", bytes(4, 'b'), null);
+		// Touch a so that b becomes the eldest entry
+		store.getBytes("blobs/a");
+		store.put("blobs/c", bytes(4, 'c'), null);
+
+		assertTrue(Files.exists(root.resolve("blobs/a")));
+		assertFalse(Files.exists(root.resolve("blobs/b")));
+		assertTrue(Files.exists(root.resolve("blobs/c")));
+
+		// An evicted object is fetched from the origin and cached again
+		assertArrayEquals(bytes(4, 'b'), store.getBytes("blobs/b"));
+		assertTrue(Files.exists(root.resolve("blobs/b")));
+	}
+
+	@Test
+	void objectsLargerThanTheCacheAreServedFromTheOrigin() {
+		LocalFileSystemBlobStore cache = new LocalFileSystemBlobStore(root);
+		TieredBlobStore store = new TieredBlobStore(cache, new InMemoryBlobStore(), 10);
+
+		store.put("blobs/large", bytes(20, 'x'), null);
+
+		assertFalse(Files.exists(root.resolve("blobs/large")));
+		assertNull(store.localFile("blobs/large"));
+		assertArrayEquals(bytes(20, 'x'), store.getBytes("blobs/large"));
+		assertEquals(20, store.size("blobs/large"));
+	}
+
+	@Test
+	void cachedObjectsAreStreamedRatherThanHandedOutForSendfile() throws IOException {
+		TieredBlobStore store = new TieredBlobStore(new LocalFileSystemBlobStore(root), new InMemoryBlobStore(), 100);
+		store.put("blobs/a", "0123456789".getBytes(), null);
+
+		// The path would outlive the pin, so the web layer must use transferTo instead
+		assertNull(store.localFile("blobs/a"));
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		assertEquals(4, store.transferTo("blobs/a", 3, 4, Channels.newChannel(output)));
+		assertEquals("3456", output.toString());
+	}
+
+	@Test
+	void restartKeepsCachedFilesAndDropsOldestOverBudget() throws IOException {
+		LocalFileSystemBlobStore cache = new LocalFileSystemBlobStore(root);
+		TieredBlobStore store = new TieredBlobStore(cache, new InMemoryBlobStore(), 100);
+		store.put("blobs/old", bytes(6, 'o'), null);
+		store.put("blobs/new", bytes(6, 'n'), null);
+		Files.setLastModifiedTime(root.resolve("blobs/old"), FileTime.fromMillis(1_000));
+		Files.setLastModifiedTime(root.resolve("blobs/new"), FileTime.fromMillis(2_000));
+		// Leftover of a write interrupted by the shutdown
+		Path partial = Files.createFile(root.resolve("blobs/.upload123.tmp"));
+
+		// The new process has a smaller budget and an origin that no longer holds the objects
+		TieredBlobStore restarted = new TieredBlobStore(new LocalFileSystemBlobStore(root), new InMemoryBlobStore(), 10);
+
+		assertFalse(Files.exists(partial));
+		assertFalse(Files.exists(root.resolve("blobs/old")));
+		assertArrayEquals(bytes(6, 'n'), restarted.getBytes("blobs/new"));
+		assertEquals(6, restarted.size("blobs/new"));
+	}
+
+	@Test
+	void objectBeingReadIsNotEvicted() throws IOException {
+		LocalFileSystemBlobStore cache = new LocalFileSystemBlobStore(root);
+		TieredBlobStore store = new TieredBlobStore(cache, new InMemoryBlobStore(), 10);
+		store.put("blobs/a", bytes(6, 'a'), null);
+		Path file = root.resolve("blobs/a");
+
+		// Writes that would evict a arrive while a is still being sent
+		ByteArrayOutputStream received = new ByteArrayOutputStream();
+		boolean[] presentDuringRead = new boolean[1];
+		WritableByteChannel target = new WritableByteChannel() {
+			@Override
+			public int write(ByteBuffer source) {
+				store.put("blobs/b", bytes(6, 'b'), null);
+				presentDuringRead[0] = Files.exists(file);
+				int count = source.remaining();
+				byte[] chunk = new byte[count];
+				source.get(chunk);
+				received.writeBytes(chunk);
+				return count;
+			}
+
+			@Override
+			public boolean isOpen() {
+				return true;
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		store.transferTo("blobs/a", 0, -1, target);
+
+		assertTrue(presentDuringRead[0]);
+		assertArrayEquals(bytes(6, 'a'), received.toByteArray());
+		// The budget was kept by evicting the next least recently used object instead
+		assertTrue(Files.exists(file));
+		assertFalse(Files.exists(root.resolve("blobs/b")));
+		assertArrayEquals(bytes(6, 'b'), store.getBytes("blobs/b"));
+	}
+
+	@Test
+	void openStreamReadsRanges() throws IOException {
+		TieredBlobStore store = new TieredBlobStore(new LocalFileSystemBlobStore(root), new InMemoryBlobStore(), 100);
+		store.put("blobs/a", "0123456789".getBytes(), null);
+
+		try (InputStream input = store.openStream("blobs/a", 3, 4)) {
+			assertEquals("3456", new String(input.readAllBytes()));
+		}
+	}
+
+	private static byte[] bytes(int length, char fill) {
+		byte[] data = new byte[length];
+		Arrays.fill(data, (byte) fill);
+		return data;
+	}
+}
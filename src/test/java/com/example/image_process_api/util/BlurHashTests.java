@@ -0,0 +1,42 @@
+package com.example.image_process_api.util;
+
+import org.junit.jupiter.api.Test;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class BlurHashTests {
+
+	@Test
+	void flatImagesMatchTheReferenceEncoder() {
+		// The well-known hash of an all-black image: no maximum, a black DC and zero AC components ("fQ")
+		assertEquals("L00000fQfQfQfQfQfQfQfQfQfQfQ", BlurHash.encode(flat(0x000000, 32), 32, 32, 4, 3));
+		// A single component is just the average colour in base 83; sRGB survives the trip through linear light
+		assertEquals("00TSUA", BlurHash.encode(flat(0xFFFFFF, 32), 32, 32, 1, 1));
+		assertEquals("005?}k", BlurHash.encode(flat(0x336699, 8), 8, 8, 1, 1));
+	}
+
+	@Test
+	void componentCountsAreEncodedInTheLength() {
+		int[] gradient = new int[32 * 32];
+		for (int i = 0; i < gradient.length; i++) {
+			int value = (i % 32) * 8;
+			gradient[i] = (value << 16) | (value << 8) | value;
+		}
+
+		String hash = BlurHash.encode(gradient, 32, 32, 4, 3);
+
+		assertEquals(28, hash.length());
+		assertEquals('L', hash.charAt(0));
+		assertEquals(6 + 2 * (9 * 9 - 1), BlurHash.encode(gradient, 32, 32, 9, 9).length());
+		// A horizontal gradient has AC energy, so the maximum is not zero
+		assertNotEquals('0', hash.charAt(1));
+	}
+
+	private int[] flat(int rgb, int size) {
+		int[] pixels = new int[size * size];
+		Arrays.fill(pixels, rgb);
+		return pixels;
+	}
+}
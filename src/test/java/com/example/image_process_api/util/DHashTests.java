@@ -0,0 +1,115 @@
+package com.example.image_process_api.util;
+
+import org.junit.jupiter.api.Test;
+import com.example.image_process_api.service.ImageMetadataExtractor;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DHashTests {
+
+	private final ImageMetadataExtractor extractor = new ImageMetadataExtractor();
+
+	@Test
+	void resizedAndRecompressedCopiesKeepTheirHash() throws IOException {
+		BufferedImage original = scene(1200, 800, 0);
+		long hash = hash(png(original));
+
+		long halfSize = hash(png(scale(original, 600, 400)));
+		long thumbnail = hash(png(scale(original, 150, 100)));
+		long lowQuality = hash(jpeg(original, 0.3f));
+		long thumbnailJpeg = hash(jpeg(scale(original, 300, 200), 0.5f));
+
+		for (long copy : new long[] {halfSize, thumbnail, lowQuality, thumbnailJpeg}) {
+			assertTrue(DHash.distance(hash, copy) <= 10, "copy distance " + DHash.distance(hash, copy));
+		}
+	}
+
+	@Test
+	void differentPicturesAreFarApart() throws IOException {
+		long first = hash(png(scene(1200, 800, 0)));
+		long second = hash(png(scene(1200, 800, 1)));
+
+		assertTrue(DHash.distance(first, second) > 20, "distance " + DHash.distance(first, second));
+	}
+
+	@Test
+	void encodingIsDeterministic() {
+		int[] pixels = new int[9 * 8];
+		for (int i = 0; i < pixels.length; i++) {
+			int gray = (i * 37) % 256;
+			pixels[i] = gray << 16 | gray << 8 | gray;
+		}
+
+		assertEquals(DHash.encode(pixels, 9, 8), DHash.encode(pixels.clone(), 9, 8));
+		assertEquals(0, DHash.distance(0x1234L, 0x1234L));
+		assertEquals(64, DHash.distance(0L, -1L));
+	}
+
+	private long hash(byte[] encoded) {
+		return extractor.extract(encoded).getPerceptualHash();
+	}
+
+	// Gradient background with a few shapes; variant 1 mirrors the layout and inverts the gradient
+	private static BufferedImage scene(int width, int height, int variant) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int value = variant == 0 ? x * 255 / width : 255 - y * 255 / height;
+				image.setRGB(x, y, value << 16 | (255 - value) << 8 | 128);
+			}
+		}
+		Graphics2D graphics = image.createGraphics();
+		graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		int offset = variant == 0 ? 0 : width / 2;
+		graphics.setColor(Color.WHITE);
+		graphics.fillOval(width / 10 + offset, height / 5, width / 3, height / 2);
+		graphics.setColor(Color.BLACK);
+		graphics.fillRect(width / 2 - offset, height / 3, width / 4, height / 2);
+		graphics.setColor(Color.YELLOW);
+		graphics.fillRect(0, height * (variant == 0 ? 4 : 0) / 5, width, height / 10);
+		graphics.dispose();
+		return image;
+	}
+
+	private static BufferedImage scale(BufferedImage source, int width, int height) {
+		BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = scaled.createGraphics();
+		graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		graphics.drawImage(source, 0, 0, width, height, null);
+		graphics.dispose();
+		return scaled;
+	}
+
+	private static byte[] png(BufferedImage image) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", output);
+		return output.toByteArray();
+	}
+
+	private static byte[] jpeg(BufferedImage image, float quality) throws IOException {
+		ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+		ImageWriteParam param = writer.getDefaultWriteParam();
+		param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+		param.setCompressionQuality(quality);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+			writer.setOutput(stream);
+			writer.write(null, new IIOImage(image, null, null), param);
+		} finally {
+			writer.dispose();
+		}
+		return output.toByteArray();
+	}
+}
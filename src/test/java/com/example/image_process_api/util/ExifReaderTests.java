@@ -0,0 +1,150 @@
+package com.example.image_process_api.util;
+
+import org.junit.jupiter.api.Test;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExifReaderTests {
+
+	private static final Map<String, String> EXPECTED = Map.of(
+			"Make", "ExampleCam",
+			"Orientation", "6",
+			"ISOSpeedRatings", "400",
+			"ExposureTime", "1/250"
+	);
+
+	@Test
+	void readsBigAndLittleEndianExif() {
+		assertEquals(EXPECTED, ExifReader.read(jpeg(exif(ByteOrder.BIG_ENDIAN, 3))));
+		assertEquals(EXPECTED, ExifReader.read(jpeg(exif(ByteOrder.LITTLE_ENDIAN, 3))));
+	}
+
+	@Test
+	void skipsFillBytesAndOtherSegments() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(new byte[] {(byte) 0xFF, (byte) 0xD8});
+		out.write(segment(0xE0, "JFIF\0".getBytes(StandardCharsets.ISO_8859_1)));
+		out.write(0xFF);
+		out.write(segment(0xE1, exif(ByteOrder.BIG_ENDIAN, 3)));
+		out.write(new byte[] {(byte) 0xFF, (byte) 0xDA});
+
+		assertEquals(EXPECTED, ExifReader.read(out.toByteArray()));
+	}
+
+	@Test
+	void keepsTagsReadBeforeAnOversizedEntryCount() {
+		// IFD0 claims 65535 entries but only three fit; reading stops at the segment end
+		byte[] tiff = exif(ByteOrder.LITTLE_ENDIAN, 0xFFFF);
+
+		Map<String, String> tags = ExifReader.read(jpeg(tiff));
+
+		assertEquals("ExampleCam", tags.get("Make"));
+		assertEquals("6", tags.get("Orientation"));
+	}
+
+	@Test
+	void keepsTagsReadBeforeATruncation() {
+		byte[] tiff = exif(ByteOrder.BIG_ENDIAN, 3);
+		byte[] data = jpeg(tiff);
+		// Cut the file inside the Exif sub-IFD; the segment length still claims the full block
+		byte[] truncated = Arrays.copyOf(data, data.length - 30);
+
+		Map<String, String> tags = ExifReader.read(truncated);
+
+		assertEquals("6", tags.get("Orientation"));
+		assertFalse(tags.containsKey("ExposureTime"));
+	}
+
+	@Test
+	void ignoresImagesWithoutExif() throws IOException {
+		byte[] jfifOnly = concat(new byte[] {(byte) 0xFF, (byte) 0xD8},
+				segment(0xE0, "JFIF\0".getBytes(StandardCharsets.ISO_8859_1)),
+				new byte[] {(byte) 0xFF, (byte) 0xDA, 0, 2});
+		assertTrue(ExifReader.read(jfifOnly).isEmpty());
+		assertTrue(ExifReader.read(png()).isEmpty());
+		assertTrue(ExifReader.read("RIFF\0\0\0\0WEBPVP8 ".getBytes(StandardCharsets.ISO_8859_1)).isEmpty());
+		assertTrue(ExifReader.read(new byte[0]).isEmpty());
+	}
+
+	@Test
+	void detectsColorProfiles() throws IOException {
+		byte[] iccSegment = segment(0xE2, "ICC_PROFILE\0\1\1profile".getBytes(StandardCharsets.ISO_8859_1));
+		assertTrue(ExifReader.hasColorProfile(concat(new byte[] {(byte) 0xFF, (byte) 0xD8}, iccSegment)));
+		assertFalse(ExifReader.hasColorProfile(jpeg(exif(ByteOrder.BIG_ENDIAN, 3))));
+
+		byte[] plainPng = png();
+		assertFalse(ExifReader.hasColorProfile(plainPng));
+		// Insert an iCCP chunk right after IHDR (8-byte signature + 25-byte IHDR chunk)
+		byte[] iccp = ByteBuffer.allocate(12 + 5).putInt(5).put("iCCP".getBytes(StandardCharsets.ISO_8859_1))
+				.put("sRGB\0".getBytes(StandardCharsets.ISO_8859_1)).putInt(0).array();
+		assertTrue(ExifReader.hasColorProfile(concat(Arrays.copyOf(plainPng, 33), iccp,
+				Arrays.copyOfRange(plainPng, 33, plainPng.length))));
+	}
+
+	/**
+	 * Build an EXIF payload: IFD0 with Make, Orientation and an Exif IFD pointer, then a sub-IFD with ISO and
+	 * exposure time
+	 */
+	private byte[] exif(ByteOrder order, int ifd0Count) {
+		ByteBuffer tiff = ByteBuffer.allocate(120).order(order);
+		tiff.put(order == ByteOrder.LITTLE_ENDIAN ? new byte[] {'I', 'I'} : new byte[] {'M', 'M'});
+		tiff.putShort((short) 42).putInt(8);
+
+		// IFD0 at 8: three entries (2 + 3 * 12 + 4 = 42 bytes), values from 50
+		tiff.putShort((short) ifd0Count);
+		entry(tiff, 0x010F, 2, 11, 50);
+		tiff.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) 6).putShort((short) 0);
+		entry(tiff, 0x8769, 4, 1, 62);
+		tiff.putInt(0);
+		tiff.position(50).put("ExampleCam\0".getBytes(StandardCharsets.US_ASCII));
+
+		// Exif IFD at 62: two entries (2 + 2 * 12 + 4 = 30 bytes), rational at 92
+		tiff.position(62).putShort((short) 2);
+		tiff.putShort((short) 0x8827).putShort((short) 3).putInt(1).putShort((short) 400).putShort((short) 0);
+		entry(tiff, 0x829A, 5, 1, 92);
+		tiff.putInt(0);
+		tiff.position(92).putInt(1).putInt(250);
+
+		return concat("Exif\0\0".getBytes(StandardCharsets.ISO_8859_1), Arrays.copyOf(tiff.array(), 100));
+	}
+
+	private void entry(ByteBuffer tiff, int tag, int type, int count, int value) {
+		tiff.putShort((short) tag).putShort((short) type).putInt(count).putInt(value);
+	}
+
+	private byte[] jpeg(byte[] exifPayload) {
+		return concat(new byte[] {(byte) 0xFF, (byte) 0xD8}, segment(0xE1, exifPayload),
+				new byte[] {(byte) 0xFF, (byte) 0xDA, 0, 2});
+	}
+
+	private byte[] segment(int marker, byte[] payload) {
+		return ByteBuffer.allocate(4 + payload.length)
+				.put((byte) 0xFF).put((byte) marker).putShort((short) (payload.length + 2)).put(payload)
+				.array();
+	}
+
+	private byte[] png() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB), "png", out);
+		return out.toByteArray();
+	}
+
+	private byte[] concat(byte[]... parts) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (byte[] part : parts) {
+			out.writeBytes(part);
+		}
+		return out.toByteArray();
+	}
+}